@@ -0,0 +1,105 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Runs many commands in one process, sharing the repository's caches
+ *  between them, as for the command
+ *      java gitlet.Main batch [FILE]
+ *  which reads the commands from FILE, or from the standard input, one
+ *  per line.  A line is split into words at blanks, except within single
+ *  or double quotes, so that
+ *      commit "fix the parser"
+ *  has two words; blank lines and lines starting with # are skipped.  A
+ *  command that fails prints its error message, and the batch goes on
+ *  with the next one.
+ */
+class Batch {
+
+    /** Run the commands in FILENAME, or on the standard input if it is
+     *  null, printing the output of each. */
+    static void run(String fileName) {
+        try (BufferedReader in = new BufferedReader(fileName == null
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : new FileReader(fileName, StandardCharsets.UTF_8))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                String trimmed = line.strip();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                List<String> words = split(trimmed);
+                if (words == null) {
+                    System.out.println("Unterminated quote.");
+                } else {
+                    System.out.print(execute(words.toArray(new String[0])));
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read %s.", fileName == null ? "standard input" : fileName);
+        }
+    }
+
+    /** Run the command given by ARGS and return what it prints, including
+     *  its error message if it fails. */
+    static String execute(String... args) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(result, true, StandardCharsets.UTF_8));
+        try {
+            if (args.length > 0 && (args[0].equals("batch") || args[0].equals("daemon"))) {
+                throw Utils.error("Cannot run %s in batch mode.", args[0]);
+            }
+            Main.run(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+        } finally {
+            System.setOut(stdout);
+        }
+        return result.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Return the words of LINE, or null if it has an unterminated quote. */
+    static List<String> split(String line) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = null;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    word.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (word != null) {
+                    words.add(word.toString());
+                    word = null;
+                }
+            } else {
+                if (word == null) {
+                    word = new StringBuilder();
+                }
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                } else {
+                    word.append(c);
+                }
+            }
+        }
+        if (quote != 0) {
+            return null;
+        }
+        if (word != null) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+}
@@ -0,0 +1,70 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** A reader over the bytes produced by a BinaryOutput.  Malformed input
+ *  results in an IllegalArgumentException.
+ */
+class BinaryInput {
+
+    private final byte[] bytes;
+    private int position;
+
+    BinaryInput(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /** Return the number of bytes read so far. */
+    int position() {
+        return position;
+    }
+
+    int readByte() {
+        if (position >= bytes.length) {
+            throw new IllegalArgumentException("truncated object");
+        }
+        return bytes[position++] & 0xFF;
+    }
+
+    long readVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    /** Read a raw 20-byte hash and return it as 40 hexadecimal digits. */
+    String readHash() {
+        if (position + Utils.UID_BYTES > bytes.length) {
+            throw new IllegalArgumentException("truncated object");
+        }
+        String hashValue = Utils.toHex(bytes, position);
+        position += Utils.UID_BYTES;
+        return hashValue;
+    }
+
+    byte[] readBytes(int length) {
+        if (length < 0 || position + length > bytes.length) {
+            throw new IllegalArgumentException("truncated object");
+        }
+        byte[] result = Arrays.copyOfRange(bytes, position, position + length);
+        position += length;
+        return result;
+    }
+
+    String readString() {
+        int length = (int) readVarint();
+        if (length < 0 || position + length > bytes.length) {
+            throw new IllegalArgumentException("truncated object");
+        }
+        String s = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return s;
+    }
+}
@@ -0,0 +1,48 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/** A buffer into which the compact binary forms of gitlet objects are
+ *  written: unsigned varints, raw 20-byte hashes and length-prefixed
+ *  UTF-8 strings.  See BinaryInput for the matching reader.
+ */
+class BinaryOutput {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    void writeByte(int b) {
+        bytes.write(b);
+    }
+
+    /** Write the non-negative VALUE seven bits at a time, low-order bits
+     *  first, with the high bit of each byte set if more bytes follow. */
+    void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        bytes.write((int) value);
+    }
+
+    /** Write the 40-digit hexadecimal HASHVALUE as 20 raw bytes. */
+    void writeHash(String hashValue) {
+        byte[] raw = new byte[Utils.UID_BYTES];
+        Utils.fromHex(hashValue, raw, 0);
+        bytes.write(raw, 0, raw.length);
+    }
+
+    void writeBytes(byte[] b) {
+        bytes.write(b, 0, b.length);
+    }
+
+    void writeString(String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(utf8.length);
+        bytes.write(utf8, 0, utf8.length);
+    }
+
+    byte[] toByteArray() {
+        return bytes.toByteArray();
+    }
+}
@@ -1,15 +1,11 @@
 package gitlet;
 
-import java.io.File;
-import java.io.Serializable;
+/** A reference from a commit to file contents held in the object store. */
+public class Blob {
 
-public class Blob implements Serializable {
-
-    private File fileName;
     private String hashValue;
 
-    public Blob(File fileName, String hashValue) {
-        this.fileName = fileName;
+    public Blob(String hashValue) {
         this.hashValue = hashValue;
     }
 
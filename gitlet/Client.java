@@ -0,0 +1,66 @@
+package gitlet;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/** A command-line front end that may be used in place of Main:
+ *      java gitlet.Client COMMAND ARGS...
+ *  If a Daemon is serving the repository in the current directory, the
+ *  command is sent to it and its output copied to the standard output;
+ *  otherwise the command is run in this process.  The command is never
+ *  run here once it has been sent, even if the connection is then lost,
+ *  since the daemon may already have run it.
+ */
+public class Client {
+
+    public static void main(String... args) {
+        boolean sent = false;
+        if (Daemon.SOCKET.exists()) {
+            try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+                if (connect(channel)) {
+                    sent = true;
+                    send(channel, args);
+                }
+            } catch (IOException excp) {
+                // failing to open the socket, or to close it once the
+                // command has run, leaves nothing to do here
+            }
+        }
+        if (!sent) {
+            Main.main(args);
+        }
+    }
+
+    /** Connect CHANNEL to the daemon's socket, returning false if no daemon
+     *  is listening on it. */
+    private static boolean connect(SocketChannel channel) {
+        try {
+            return channel.connect(UnixDomainSocketAddress.of(Daemon.SOCKET.toPath()));
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Send the command ARGS to the daemon connected to CHANNEL and copy
+     *  its output to the standard output.  Once the request may have
+     *  reached the daemon, which may have run it, a failure is reported
+     *  rather than running the command again here. */
+    private static void send(SocketChannel channel, String... args) {
+        try {
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            Channels.newInputStream(channel).transferTo(System.out);
+        } catch (IOException excp) {
+            System.out.printf("Lost connection to the daemon: %s%n", excp.getMessage());
+        }
+        System.out.flush();
+    }
+}
@@ -0,0 +1,74 @@
+package gitlet;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** The encodings in which the object store may keep the contents of an
+ *  object.  Each is identified in an object's header by its code.
+ */
+enum Codec {
+
+    /** Contents stored as they are. */
+    RAW(0) {
+        @Override
+        OutputStream encode(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        InputStream decode(InputStream in) {
+            return in;
+        }
+    },
+
+    /** Contents compressed with java.util.zip.Deflater. */
+    DEFLATE(1) {
+        @Override
+        OutputStream encode(OutputStream out) {
+            return new DeflaterOutputStream(out);
+        }
+
+        @Override
+        InputStream decode(InputStream in) {
+            return new InflaterInputStream(in);
+        }
+    };
+
+    private final int code;
+
+    Codec(int code) {
+        this.code = code;
+    }
+
+    int code() {
+        return code;
+    }
+
+    /** Return a stream that writes to OUT the encoding of what is written
+     *  to it.  Closing it closes OUT. */
+    abstract OutputStream encode(OutputStream out);
+
+    /** Return a stream of the decoding of IN.  Closing it closes IN. */
+    abstract InputStream decode(InputStream in);
+
+    static Codec forCode(int code) {
+        for (Codec codec : values()) {
+            if (codec.code == code) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("unknown object codec " + code);
+    }
+
+    /** Return the codec called NAME, ignoring case. */
+    static Codec forName(String name) {
+        for (Codec codec : values()) {
+            if (codec.name().equalsIgnoreCase(name.trim())) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("unknown object codec " + name);
+    }
+}
@@ -1,42 +1,99 @@
 package gitlet;
 
-import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
 
-public class Commit implements Serializable {
+public class Commit {
 
     private static final SimpleDateFormat simpleDateFormat = new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy Z");
 
+    /** Version of the binary format written by encode. */
+    private static final int FORMAT_VERSION = 1;
+    private static final int HAS_PARENT = 1;
+    private static final int HAS_MERGE_PARENT = 2;
+
     private String message;
     private String hashValue;
-    private String time;
-    private HashMap<String, Blob> blobs;
+    /** Commit time in milliseconds since the epoch. */
+    private long time;
+    private String tree;
     private String parent;
     private String mergeParent = null;
 
-    public Commit(String message, HashMap<String, Blob> blobs, String parent) {
+    /** The store holding this commit's trees and blobs. */
+    private ObjectStore store;
+    /** Every file in this commit by path, read from the tree on demand. */
+    private HashMap<String, Blob> blobs;
+
+    public Commit(String message, String tree, String parent) {
+        this(message, tree, parent, System.currentTimeMillis());
+    }
+
+    public Commit(String message, String tree, String parent, long time) {
         this.message = message;
-        this.blobs = blobs;
+        this.tree = tree;
         this.parent = parent;
-        time = simpleDateFormat.format(new Date(System.currentTimeMillis()));
+        this.time = time;
     }
 
-    public static Commit Initial() {
-        Commit initial = new Commit("initial commit", new HashMap<>(), null);
-        initial.time = simpleDateFormat.format(new Date(0));
-        return initial;
+    public static Commit Initial(String emptyTree) {
+        return new Commit("initial commit", emptyTree, null, 0);
     }
 
-    public static Commit Sentinel() {
-        Commit sentinel = new Commit("sentinel commit", null, null);
-        sentinel.time = simpleDateFormat.format(new Date(0));
-        return sentinel;
+    /** Return the binary form of this commit:
+     *      version      one byte
+     *      flags        one byte, HAS_PARENT | HAS_MERGE_PARENT
+     *      parent       20 bytes, if present
+     *      merge parent 20 bytes, if present
+     *      time         varint milliseconds since the epoch
+     *      message      varint length followed by UTF-8 bytes
+     *      tree         20 bytes
+     *  The id of a commit is the SHA-1 hash of this form. */
+    public byte[] encode() {
+        BinaryOutput out = new BinaryOutput();
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte((parent != null ? HAS_PARENT : 0) | (mergeParent != null ? HAS_MERGE_PARENT : 0));
+        if (parent != null) {
+            out.writeHash(parent);
+        }
+        if (mergeParent != null) {
+            out.writeHash(mergeParent);
+        }
+        out.writeVarint(time);
+        out.writeString(message);
+        out.writeHash(tree);
+        return out.toByteArray();
+    }
+
+    /** Return the commit whose binary form is BYTES. */
+    public static Commit decode(byte[] bytes) {
+        BinaryInput in = new BinaryInput(bytes);
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("unknown commit format version " + version);
+        }
+        int flags = in.readByte();
+        String parent = (flags & HAS_PARENT) != 0 ? in.readHash() : null;
+        String mergeParent = (flags & HAS_MERGE_PARENT) != 0 ? in.readHash() : null;
+        long time = in.readVarint();
+        String message = in.readString();
+        Commit c = new Commit(message, in.readHash(), parent, time);
+        c.mergeParent = mergeParent;
+        return c;
     }
 
     public boolean contains(String fileName, String hashValue) {
-        return blobs.containsKey(fileName) && blobs.get(fileName).getHashValue().equals(hashValue);
+        Blob blob = getBlob(fileName);
+        return blob != null && blob.getHashValue().equals(hashValue);
+    }
+
+    /** Return the blob for FILENAME in this commit, or null if it has none. */
+    public Blob getBlob(String fileName) {
+        if (blobs != null) {
+            return blobs.get(fileName);
+        }
+        return Tree.find(store, tree, fileName);
     }
 
     public String getMessage() {
@@ -48,10 +105,40 @@ public class Commit implements Serializable {
     }
 
     public String getTime() {
+        return formatTime(time);
+    }
+
+    /** Return TIME, in milliseconds since the epoch, as shown by log. */
+    public static String formatTime(long time) {
+        return simpleDateFormat.format(new Date(time));
+    }
+
+    public long getTimeMillis() {
         return time;
     }
 
-    public HashMap<String, Blob> getBlobs() { return blobs; }
+    public HashMap<String, Blob> getBlobs() {
+        if (blobs == null) {
+            blobs = new HashMap<>();
+            Tree.flatten(store, tree, "", blobs);
+        }
+        return blobs;
+    }
+
+    /** Return an estimate of the bytes of memory this commit occupies,
+     *  including the files it has read in from its tree. */
+    public long estimatedSize() {
+        long size = 128 + 2L * message.length();
+        if (blobs != null) {
+            // a map entry, a path of about 32 characters, a Blob and its hash
+            size += blobs.size() * 256L;
+        }
+        return size;
+    }
+
+    public String getTree() {
+        return tree;
+    }
 
     public String getParent() {
         return parent;
@@ -67,6 +154,10 @@ public class Commit implements Serializable {
         this.mergeParent = mergeParent;
     }
 
+    public void setStore(ObjectStore store) {
+        this.store = store;
+    }
+
     public void setHashValue(String hashValue) {
         this.hashValue = hashValue;
     }
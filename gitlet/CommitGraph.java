@@ -0,0 +1,712 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/** A side file holding the parents, generation number, time and message
+ *  of every commit, so that history walks need not decode commits.  The
+ *  graph file begins with a header
+ *      magic, version  4 bytes each
+ *      checked stamp   8 bytes, the stamp of the commit store when the
+ *                      graph was last found to hold every commit
+ *      checked count   4 bytes, the number of records then, or -1
+ *      unreadable count  4 bytes, U
+ *      sorted count    4 bytes, S
+ *      unreadable      U 20-byte ids of the files in the commit store that
+ *                      the last rebuild could not read as commits
+ *      lookup          S 4-byte record numbers, those of the first S
+ *                      records in ascending order of id
+ *  followed by one fixed-width record per commit, each after the records
+ *  of its parents:
+ *      id            20 bytes
+ *      parent        20 bytes, all zero if none
+ *      merge parent  20 bytes, all zero if none
+ *      generation    4 bytes, 1 for the initial commit and otherwise one
+ *                    more than the greatest generation of its parents
+ *      time          8 bytes, milliseconds since the epoch
+ *      message       8-byte offset and 4-byte length in the messages file
+ *  The messages file holds the UTF-8 messages back to back.  Both files are
+ *  only appended to, messages first, so a record never refers to a message
+ *  that was not written, apart from the checked stamp and count, which are
+ *  updated in place.  A commit is looked up by binary search of the lookup
+ *  table, and, if not found there, among the records added since it was
+ *  written, which are re-sorted into it once they grow past a sixteenth
+ *  of it.  A process can thus tell that the graph is complete, and find a
+ *  commit, without listing the commit store or indexing every record.  If a commit is missing from the graph, because
+ *  it is stale, absent or of an older version, both files are rebuilt from
+ *  the commit store, leaving out any file there that cannot be read as a
+ *  commit.  A third file, the message index, maps messages to
+ *  the records that have them, for find, and a fourth, a TokenIndex, maps
+ *  the words of messages to them, for search.
+ */
+public class CommitGraph {
+
+    private static final int MAGIC = 0x43475048;
+    private static final int VERSION = 3;
+    /** The length of the header before the unreadable ids. */
+    private static final int HEADER_SIZE = 28;
+    /** The offsets in the header of the checked stamp and count. */
+    private static final int CHECKED_OFFSET = 8;
+    /** The least number of records added since the lookup table was
+     *  written that re-sorts them into it. */
+    private static final int MIN_UNSORTED = 64;
+    private static final int INDEX_MAGIC = 0x434d5849;
+    private static final int INDEX_HEADER_INTS = 4;
+    private static final int MIN_BUCKETS = 1024;
+    static final int RECORD_SIZE = 3 * Utils.UID_BYTES + 4 + 8 + 8 + 4;
+
+    /** Marks on commits during a merge-base search. */
+    private static final int FROM_FIRST = 1;
+    private static final int FROM_SECOND = 2;
+    private static final int STALE = 4;
+
+    /** The parents, generation, time and message of one commit. */
+    public static class Entry {
+        private final String hashValue;
+        private final String parent;
+        private final String mergeParent;
+        private final int generation;
+        private final long time;
+        private final String message;
+
+        Entry(String hashValue, String parent, String mergeParent, int generation, long time, String message) {
+            this.hashValue = hashValue;
+            this.parent = parent;
+            this.mergeParent = mergeParent;
+            this.generation = generation;
+            this.time = time;
+            this.message = message;
+        }
+
+        public String getHashValue() {
+            return hashValue;
+        }
+
+        public String getParent() {
+            return parent;
+        }
+
+        public String getMergeParent() {
+            return mergeParent;
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+
+        public String getTime() {
+            return Commit.formatTime(time);
+        }
+
+        public long getTimeMillis() {
+            return time;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private final File graphFile;
+    private final File messagesFile;
+    private final File messageIndexFile;
+    private final TokenIndex tokenIndex;
+    private final CommitStore commits;
+
+    private ByteBuffer records;
+    private ByteBuffer messages;
+    private int count;
+    /** The offsets of the lookup table and the first record in the graph
+     *  file. */
+    private int lookup;
+    private int start;
+    /** The number of records in the lookup table. */
+    private int sorted;
+    /** True iff the graph file exists and is of the current version. */
+    private boolean valid;
+    /** The stamp of the graph file when mapped. */
+    private long stamp;
+    /** The number of records and the stamp of the commit store when the
+     *  graph was last found to hold every commit, read from the header. */
+    private int checkedCount;
+    private long checkedStamp;
+    /** The ids of the files in the commit store that the last rebuild could
+     *  not read as commits, read from the header. */
+    private List<String> unreadable = new ArrayList<>();
+    /** Maps the id of each commit added since the lookup table was written
+     *  to its record number, built when first needed. */
+    private HashMap<String, Integer> unsorted;
+    /** True iff the repository lock is shared, so that other processes may
+     *  have the graph mapped. */
+    private boolean shared;
+
+    public CommitGraph(File graphFile, File messagesFile, File messageIndexFile, File tokenIndexFile,
+                       CommitStore commits) {
+        this.graphFile = graphFile;
+        this.messagesFile = messagesFile;
+        this.messageIndexFile = messageIndexFile;
+        this.tokenIndex = new TokenIndex(tokenIndexFile);
+        this.commits = commits;
+    }
+
+    /** Append the record for C, which must already be in the commit store,
+     *  whose stamp was STORESTAMP before C was put there.  If the graph was
+     *  complete then, it is marked complete with C. */
+    public void add(Commit c, long storeStamp) {
+        load();
+        if (!valid || records.capacity() != start + count * RECORD_SIZE
+                || ordinal(c.getHashValue()) >= 0
+                || c.getParent() != null && ordinal(c.getParent()) < 0
+                || c.getMergeParent() != null && ordinal(c.getMergeParent()) < 0) {
+            rebuild();
+            return;
+        }
+        int generation = 1;
+        for (String parent : new String[] {c.getParent(), c.getMergeParent()}) {
+            if (parent != null) {
+                generation = Math.max(generation, get(parent).generation + 1);
+            }
+        }
+        byte[] message = c.getMessage().getBytes(StandardCharsets.UTF_8);
+        long offset = messagesFile.length();
+        append(messagesFile, message);
+        byte[] record = record(c.getHashValue(), c.getParent(), c.getMergeParent(), generation,
+                               c.getTimeMillis(), offset, message.length);
+        boolean complete = checkedCount == count && checkedStamp == storeStamp;
+        if (count + 1 - sorted >= Math.max(MIN_UNSORTED, sorted / 16)) {
+            byte[] all = new byte[(count + 1) * RECORD_SIZE];
+            records.get(start, all, 0, count * RECORD_SIZE);
+            System.arraycopy(record, 0, all, count * RECORD_SIZE, RECORD_SIZE);
+            write(all, complete ? commits.stamp() : 0, complete ? count + 1 : -1, unreadable);
+        } else {
+            append(graphFile, record);
+            if (complete) {
+                writeChecked(commits.stamp(), count + 1);
+            }
+        }
+        records = null;
+    }
+
+    /** Record whether the repository lock held is SHARED, in which case
+     *  the graph may not be rebuilt. */
+    public void setShared(boolean shared) {
+        this.shared = shared;
+    }
+
+    /** Unmap the graph if it has changed since it was mapped. */
+    public void revalidate() {
+        if (records != null && Utils.stamp(graphFile) != stamp) {
+            records = null;
+        }
+    }
+
+    /** Return the entry for the commit with ID, rebuilding the graph if it
+     *  is not there. */
+    public Entry get(String id) {
+        int ordinal = ordinal(id);
+        Entry entry = ordinal < 0 ? null : entry(ordinal);
+        if (entry == null) {
+            rebuild();
+            ordinal = ordinal(id);
+            entry = ordinal < 0 ? null : entry(ordinal);
+            if (entry == null) {
+                throw new IllegalArgumentException("no commit " + id);
+            }
+        }
+        return entry;
+    }
+
+    /** Apply ACTION to the entry of every commit, reading the graph
+     *  sequentially from its end, so that commits are visited in the reverse
+     *  of the order they were added. */
+    public void forEach(Consumer<Entry> action) {
+        loadComplete();
+        for (int i = count - 1; i >= 0; i -= 1) {
+            action.accept(entry(i));
+        }
+    }
+
+    /** Return the ids of the commits whose message is MESSAGE, in the order
+     *  they were added, found through the message index without reading
+     *  any other commit's message. */
+    public List<String> find(String message) {
+        loadComplete();
+        IntBuffer index = messageIndex();
+        int buckets = index.get(2);
+        byte[] key = message.getBytes(StandardCharsets.UTF_8);
+        List<String> result = new ArrayList<>();
+        for (int i = index.get(INDEX_HEADER_INTS + bucket(key, buckets)); i != 0;
+             i = index.get(INDEX_HEADER_INTS + buckets + i - 1)) {
+            Entry entry = entry(i - 1);
+            if (entry.message.equals(message)) {
+                result.add(entry.hashValue);
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** Return the ids of the commits whose messages contain every word of
+     *  QUERY, in the order they were added, found through the token index;
+     *  a word ending in '*' matches any word it begins. */
+    public List<String> search(String query) {
+        loadComplete();
+        List<String> result = new ArrayList<>();
+        for (int ordinal : tokenIndex.search(query, count, i -> entry(i).message)) {
+            result.add(entry(ordinal).hashValue);
+        }
+        return result;
+    }
+
+    /** Load the graph, first rebuilding it if it is not valid and complete:
+     *  if it does not hold every commit in the store or a message is
+     *  missing. */
+    private void loadComplete() {
+        load();
+        if (valid && count > 0 && records.getLong(start + count * RECORD_SIZE - 12)
+                                  + records.getInt(start + count * RECORD_SIZE - 4) > messages.capacity()) {
+            rebuild();
+            load();
+        }
+        long storeStamp = commits.stamp();
+        if (valid && count == checkedCount && storeStamp == checkedStamp) {
+            // neither the graph nor the set of commits has changed since
+            // the graph was last found complete
+            return;
+        }
+        if (!valid || count + unreadable.size() != commits.ids().size()) {
+            rebuild();
+            load();
+            return;
+        }
+        checkedCount = count;
+        checkedStamp = storeStamp;
+        if (!shared) {
+            writeChecked(storeStamp, count);
+        }
+    }
+
+    /** Return the ids of the files in the commit store that cannot be read
+     *  as commits, such as those torn by a crash, which the graph leaves
+     *  out. */
+    public List<String> unreadable() {
+        loadComplete();
+        return Collections.unmodifiableList(unreadable);
+    }
+
+    /** Return the message index, a hash table from messages to the records
+     *  of the commits that have them, reading its file, and updating it if
+     *  the graph has grown since it was written.  It is an array of ints:
+     *      magic, version, number of buckets B, number of records N covered
+     *      B buckets, each 0 or one more than the number of the last record
+     *          whose message hashes to the bucket
+     *      N links, each 0 or one more than the number of the previous
+     *          record in the same bucket
+     *  A rebuild of the graph, which may renumber its records, removes the
+     *  index file. */
+    private IntBuffer messageIndex() {
+        IntBuffer index = null;
+        if (messageIndexFile.isFile()) {
+            index = map(messageIndexFile).asIntBuffer();
+            if (index.capacity() < INDEX_HEADER_INTS || index.get(0) != INDEX_MAGIC || index.get(1) != VERSION
+                    || index.capacity() != INDEX_HEADER_INTS + index.get(2) + index.get(3) || index.get(3) > count) {
+                index = null;
+            }
+        }
+        if (index != null && index.get(3) == count) {
+            return index;
+        }
+        int buckets = index == null ? 0 : index.get(2);
+        int covered = index == null ? 0 : index.get(3);
+        if (count > buckets) {
+            buckets = Math.max(MIN_BUCKETS, Integer.highestOneBit(count) * 4);
+            covered = 0;
+        }
+        int[] table = new int[INDEX_HEADER_INTS + buckets + count];
+        table[0] = INDEX_MAGIC;
+        table[1] = VERSION;
+        table[2] = buckets;
+        table[3] = count;
+        if (covered > 0) {
+            index.get(INDEX_HEADER_INTS, table, INDEX_HEADER_INTS, buckets + covered);
+        }
+        for (int i = covered; i < count; i += 1) {
+            int at = start + i * RECORD_SIZE + 3 * Utils.UID_BYTES + 12;
+            byte[] message = new byte[records.getInt(at + 8)];
+            messages.get((int) records.getLong(at), message);
+            int b = INDEX_HEADER_INTS + bucket(message, buckets);
+            table[INDEX_HEADER_INTS + buckets + i] = table[b];
+            table[b] = i + 1;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(4 * table.length);
+        bytes.asIntBuffer().put(table);
+        Utils.writeContentsAtomically(messageIndexFile, bytes.array());
+        return IntBuffer.wrap(table);
+    }
+
+    /** Return the bucket for the message whose UTF-8 form is MESSAGE in a
+     *  message index with BUCKETS buckets, a power of two. */
+    private static int bucket(byte[] message, int buckets) {
+        return Arrays.hashCode(message) & (buckets - 1);
+    }
+
+    /** Return the id of the best common ancestor of the commits with ids
+     *  FIRST and SECOND: one that is not an ancestor of any other common
+     *  ancestor, choosing among several (as in criss-cross histories) the
+     *  one of greatest generation, then the latest, then the least id.
+     *  Commits are visited in decreasing order of generation, so that every
+     *  descendant of a commit is visited before it, and the search stops
+     *  once every commit still queued is an ancestor of a common ancestor
+     *  already found.  Only the commits made since the two histories
+     *  diverged, and not the whole history, are read. */
+    public String mergeBase(String first, String second) {
+        if (first.equals(second)) {
+            return first;
+        }
+        HashMap<String, Integer> marks = new HashMap<>();
+        PriorityQueue<Entry> queue = new PriorityQueue<>(
+            Comparator.comparingInt(Entry::getGeneration).thenComparingLong(Entry::getTimeMillis).reversed());
+        marks.put(first, FROM_FIRST);
+        marks.put(second, FROM_SECOND);
+        queue.add(get(first));
+        queue.add(get(second));
+        int active = 2;
+        List<Entry> candidates = new ArrayList<>();
+        while (active > 0) {
+            Entry entry = queue.remove();
+            int mark = marks.get(entry.hashValue);
+            if ((mark & STALE) == 0) {
+                active -= 1;
+                if ((mark & (FROM_FIRST | FROM_SECOND)) == (FROM_FIRST | FROM_SECOND)) {
+                    candidates.add(entry);
+                    mark |= STALE;
+                }
+            }
+            for (String parent : new String[] {entry.parent, entry.mergeParent}) {
+                if (parent == null) {
+                    continue;
+                }
+                Integer old = marks.get(parent);
+                int updated = old == null ? mark : old | mark;
+                if (old != null && old == updated) {
+                    continue;
+                }
+                marks.put(parent, updated);
+                if (old == null) {
+                    queue.add(get(parent));
+                    if ((updated & STALE) == 0) {
+                        active += 1;
+                    }
+                } else if ((old & STALE) == 0 && (updated & STALE) != 0) {
+                    active -= 1;
+                }
+            }
+        }
+        Entry best = null;
+        for (Entry candidate : candidates) {
+            if (best == null || better(candidate, best)) {
+                best = candidate;
+            }
+        }
+        return best == null ? null : best.hashValue;
+    }
+
+    /** True iff A is to be preferred to B as a merge base. */
+    private static boolean better(Entry a, Entry b) {
+        if (a.generation != b.generation) {
+            return a.generation > b.generation;
+        }
+        if (a.time != b.time) {
+            return a.time > b.time;
+        }
+        return a.hashValue.compareTo(b.hashValue) < 0;
+    }
+
+    /** Rewrite the graph and messages files from the commit store, leaving
+     *  out, and recording as unreadable, the files that cannot be decoded.
+     *  A parent that is missing or unreadable is taken as absent in
+     *  computing generations.  Throws RepositoryLock.ExclusiveNeeded if
+     *  the lock held is shared, since a rebuild renumbers the records that
+     *  the indexes of other readers refer to, and replaces the graph and
+     *  messages files one at a time. */
+    public void rebuild() {
+        if (shared) {
+            throw new RepositoryLock.ExclusiveNeeded();
+        }
+        HashMap<String, Integer> generations = new HashMap<>();
+        HashMap<String, Commit> read = new HashMap<>();
+        List<String> skipped = new ArrayList<>();
+        List<Commit> ordered = new ArrayList<>();
+        long storeStamp = commits.stamp();
+        List<String> ids = commits.ids();
+        for (String id : ids) {
+            Commit first = read(id, read, skipped);
+            if (first == null) {
+                continue;
+            }
+            Deque<Commit> pending = new ArrayDeque<>();
+            pending.push(first);
+            while (!pending.isEmpty()) {
+                Commit c = pending.peek();
+                if (generations.containsKey(c.getHashValue())) {
+                    pending.pop();
+                    continue;
+                }
+                int generation = 1;
+                boolean ready = true;
+                for (String parent : new String[] {c.getParent(), c.getMergeParent()}) {
+                    if (parent == null) {
+                        continue;
+                    }
+                    Integer g = generations.get(parent);
+                    if (g != null) {
+                        generation = Math.max(generation, g + 1);
+                        continue;
+                    }
+                    Commit p = Collections.binarySearch(ids, parent) >= 0 ? read(parent, read, skipped) : null;
+                    if (p != null) {
+                        pending.push(p);
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    pending.pop();
+                    generations.put(c.getHashValue(), generation);
+                    ordered.add(c);
+                }
+            }
+        }
+        BinaryOutput messageBytes = new BinaryOutput();
+        ByteBuffer graph = ByteBuffer.allocate(ordered.size() * RECORD_SIZE);
+        long offset = 0;
+        for (Commit c : ordered) {
+            byte[] message = c.getMessage().getBytes(StandardCharsets.UTF_8);
+            messageBytes.writeBytes(message);
+            graph.put(record(c.getHashValue(), c.getParent(), c.getMergeParent(),
+                             generations.get(c.getHashValue()), c.getTimeMillis(), offset, message.length));
+            offset += message.length;
+        }
+        Utils.writeContentsAtomically(messagesFile, messageBytes.toByteArray());
+        write(graph.array(), storeStamp, ordered.size(), skipped);
+        messageIndexFile.delete();
+        tokenIndex.delete();
+        records = null;
+    }
+
+    /** Return the commit with ID, reading it from the store unless it is
+     *  in READ, or null if it is in SKIPPED or cannot be decoded, in which
+     *  case it is added to SKIPPED. */
+    private Commit read(String id, HashMap<String, Commit> read, List<String> skipped) {
+        Commit c = read.get(id);
+        if (c == null && !skipped.contains(id)) {
+            try {
+                c = commits.get(id);
+                read.put(id, c);
+            } catch (IllegalArgumentException excp) {
+                skipped.add(id);
+            }
+        }
+        return c;
+    }
+
+    /** Replace the graph file by one holding the records RECORDBYTES, back
+     *  to back, all in the lookup table, and marked as complete with
+     *  CHECKEDCOUNT records and the unreadable ids SKIPPED when the commit
+     *  store had CHECKEDSTAMP. */
+    private void write(byte[] recordBytes, long checkedStamp, int checkedCount, List<String> skipped) {
+        int n = recordBytes.length / RECORD_SIZE;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i += 1) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(
+            recordBytes, a * RECORD_SIZE, a * RECORD_SIZE + Utils.UID_BYTES,
+            recordBytes, b * RECORD_SIZE, b * RECORD_SIZE + Utils.UID_BYTES));
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + Utils.UID_BYTES * skipped.size() + 4 * n);
+        header.putInt(MAGIC).putInt(VERSION).putLong(checkedStamp).putInt(checkedCount)
+            .putInt(skipped.size()).putInt(n);
+        byte[] id = new byte[Utils.UID_BYTES];
+        for (String u : skipped) {
+            Utils.fromHex(u, id, 0);
+            header.put(id);
+        }
+        for (int ordinal : order) {
+            header.putInt(ordinal);
+        }
+        Utils.writeContentsAtomically(graphFile, header.array(), recordBytes);
+    }
+
+    /** Mark the graph file as complete with COUNT records when the commit
+     *  store had STAMP. */
+    private void writeChecked(long stamp, int count) {
+        try (RandomAccessFile file = new RandomAccessFile(graphFile, "rw")) {
+            file.seek(CHECKED_OFFSET);
+            file.writeLong(stamp);
+            file.writeInt(count);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    private static byte[] record(String id, String parent, String mergeParent, int generation,
+                                 long time, long offset, int length) {
+        byte[] record = new byte[RECORD_SIZE];
+        Utils.fromHex(id, record, 0);
+        if (parent != null) {
+            Utils.fromHex(parent, record, Utils.UID_BYTES);
+        }
+        if (mergeParent != null) {
+            Utils.fromHex(mergeParent, record, 2 * Utils.UID_BYTES);
+        }
+        ByteBuffer.wrap(record, 3 * Utils.UID_BYTES, RECORD_SIZE - 3 * Utils.UID_BYTES)
+            .putInt(generation).putLong(time).putLong(offset).putInt(length);
+        return record;
+    }
+
+    /** Return the entry in record ORDINAL, or null if its message is
+     *  missing from the messages file. */
+    private Entry entry(int ordinal) {
+        byte[] ids = new byte[3 * Utils.UID_BYTES];
+        int at = start + ordinal * RECORD_SIZE;
+        records.get(at, ids);
+        int generation = records.getInt(at + ids.length);
+        long time = records.getLong(at + ids.length + 4);
+        long offset = records.getLong(at + ids.length + 12);
+        byte[] message = new byte[records.getInt(at + ids.length + 20)];
+        if (offset + message.length > messages.capacity()) {
+            return null;
+        }
+        messages.get((int) offset, message);
+        return new Entry(Utils.toHex(ids, 0), hashAt(ids, Utils.UID_BYTES), hashAt(ids, 2 * Utils.UID_BYTES),
+                         generation, time, new String(message, StandardCharsets.UTF_8));
+    }
+
+    /** Return the hash stored at OFFSET in BYTES, or null if it is all zero. */
+    private static String hashAt(byte[] bytes, int offset) {
+        for (int i = offset; i < offset + Utils.UID_BYTES; i += 1) {
+            if (bytes[i] != 0) {
+                return Utils.toHex(bytes, offset);
+            }
+        }
+        return null;
+    }
+
+    /** Return the number of the record of the commit with ID, or -1 if it
+     *  is not in the graph. */
+    private int ordinal(String id) {
+        load();
+        byte[] key = new byte[Utils.UID_BYTES];
+        Utils.fromHex(id, key, 0);
+        int lo = 0;
+        int hi = sorted;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int ordinal = records.getInt(lookup + 4 * mid);
+            int cmp = compare(ordinal, key);
+            if (cmp == 0) {
+                return ordinal;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (unsorted == null) {
+            unsorted = new HashMap<>();
+            byte[] recordId = new byte[Utils.UID_BYTES];
+            for (int i = sorted; i < count; i += 1) {
+                records.get(start + i * RECORD_SIZE, recordId);
+                unsorted.put(Utils.toHex(recordId, 0), i);
+            }
+        }
+        Integer ordinal = unsorted.get(id);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /** Compare the id in record ORDINAL with the raw id KEY. */
+    private int compare(int ordinal, byte[] key) {
+        int at = start + ordinal * RECORD_SIZE;
+        for (int k = 0; k < Utils.UID_BYTES; k += 1) {
+            int diff = (records.get(at + k) & 0xFF) - (key[k] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /** Map the graph and messages files, if not already mapped, and read
+     *  the graph's header.  A missing or unrecognized graph is treated as
+     *  empty, and a partially written final record is ignored. */
+    private void load() {
+        if (records != null) {
+            return;
+        }
+        unsorted = null;
+        unreadable = new ArrayList<>();
+        count = 0;
+        sorted = 0;
+        checkedCount = -1;
+        stamp = Utils.stamp(graphFile);
+        records = map(graphFile);
+        messages = map(messagesFile);
+        valid = records.capacity() >= HEADER_SIZE && records.getInt(0) == MAGIC && records.getInt(4) == VERSION;
+        int unreadableCount = valid ? records.getInt(HEADER_SIZE - 8) : 0;
+        int sortedCount = valid ? records.getInt(HEADER_SIZE - 4) : 0;
+        long first = HEADER_SIZE + (long) Utils.UID_BYTES * unreadableCount + 4L * sortedCount;
+        valid = valid && unreadableCount >= 0 && sortedCount >= 0
+            && first + (long) sortedCount * RECORD_SIZE <= records.capacity();
+        if (!valid) {
+            lookup = HEADER_SIZE;
+            start = HEADER_SIZE;
+            return;
+        }
+        byte[] id = new byte[Utils.UID_BYTES];
+        for (int i = 0; i < unreadableCount; i += 1) {
+            records.get(HEADER_SIZE + i * Utils.UID_BYTES, id);
+            unreadable.add(Utils.toHex(id, 0));
+        }
+        sorted = sortedCount;
+        lookup = HEADER_SIZE + Utils.UID_BYTES * unreadableCount;
+        start = (int) first;
+        count = (records.capacity() - start) / RECORD_SIZE;
+        checkedStamp = records.getLong(CHECKED_OFFSET);
+        checkedCount = records.getInt(CHECKED_OFFSET + 8);
+    }
+
+    private static ByteBuffer map(File file) {
+        if (!file.isFile()) {
+            return ByteBuffer.allocate(0);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    private static void append(File file, byte[] bytes) {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(bytes);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A sorted index of the ids of every commit in a repository, used to
+ *  resolve abbreviated ids by binary search.  The index file holds a
+ *  HEADER_SIZE-byte header (magic number and version), a fan-out table of
+ *  256 4-byte counts, in which entry B is the number of ids whose first
+ *  byte is at most B, and then the ids themselves as raw 20-byte hashes in
+ *  ascending order.  A missing or unreadable index is rebuilt from the
+ *  commit store.
+ */
+public class CommitIndex {
+
+    private static final int MAGIC = 0x43494458;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int FAN_OUT_SIZE = 256 * 4;
+    private static final int IDS_START = HEADER_SIZE + FAN_OUT_SIZE;
+
+    private final File file;
+    private final File commitsDir;
+
+    private ByteBuffer index;
+    private int count;
+    /** The stamp of the index file when mapped. */
+    private long stamp;
+
+    public CommitIndex(File file, File commitsDir) {
+        this.file = file;
+        this.commitsDir = commitsDir;
+    }
+
+    /** Return the ids that begin with PREFIX, in ascending order, stopping
+     *  after LIMIT of them. */
+    public List<String> find(String prefix, int limit) {
+        load();
+        List<String> result = new ArrayList<>();
+        if (prefix.length() > Utils.UID_LENGTH || !prefix.chars().allMatch(ch -> Character.digit(ch, 16) >= 0)) {
+            return result;
+        }
+        String padded = prefix + "0".repeat(Utils.UID_LENGTH - prefix.length());
+        byte[] key = new byte[Utils.UID_BYTES];
+        Utils.fromHex(padded, key, 0);
+
+        int lo = 0;
+        int hi = count;
+        if (prefix.length() >= 2) {
+            int first = key[0] & 0xFF;
+            lo = first == 0 ? 0 : fanOut(first - 1);
+            hi = fanOut(first);
+        }
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        byte[] id = new byte[Utils.UID_BYTES];
+        for (int i = lo; i < count && result.size() < limit; i += 1) {
+            index.get(IDS_START + i * Utils.UID_BYTES, id);
+            String hashValue = Utils.toHex(id, 0);
+            if (!hashValue.startsWith(prefix)) {
+                break;
+            }
+            result.add(hashValue);
+        }
+        return result;
+    }
+
+    /** Unmap the index if it has changed since it was mapped. */
+    public void revalidate() {
+        if (index != null && Utils.stamp(file) != stamp) {
+            index = null;
+        }
+    }
+
+    /** Insert ID, unless it is already present, as it is if the index was
+     *  just rebuilt from a commit store that holds it. */
+    public void add(String id) {
+        load();
+        byte[] key = new byte[Utils.UID_BYTES];
+        Utils.fromHex(id, key, 0);
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo < count && compare(lo, key) == 0) {
+            return;
+        }
+        byte[] ids = new byte[(count + 1) * Utils.UID_BYTES];
+        index.get(IDS_START, ids, 0, lo * Utils.UID_BYTES);
+        System.arraycopy(key, 0, ids, lo * Utils.UID_BYTES, Utils.UID_BYTES);
+        index.get(IDS_START + lo * Utils.UID_BYTES, ids, (lo + 1) * Utils.UID_BYTES, (count - lo) * Utils.UID_BYTES);
+        write(ids);
+    }
+
+    /** Rewrite the index from the commits in the commit store. */
+    public void rebuild() {
+        List<byte[]> keys = new ArrayList<>();
+        for (String name : Utils.plainFilenamesIn(commitsDir)) {
+            if (name.length() == Utils.UID_LENGTH) {
+                byte[] key = new byte[Utils.UID_BYTES];
+                Utils.fromHex(name, key, 0);
+                keys.add(key);
+            }
+        }
+        keys.sort(Arrays::compareUnsigned);
+        byte[] ids = new byte[keys.size() * Utils.UID_BYTES];
+        for (int i = 0; i < keys.size(); i += 1) {
+            System.arraycopy(keys.get(i), 0, ids, i * Utils.UID_BYTES, Utils.UID_BYTES);
+        }
+        write(ids);
+    }
+
+    /** Replace the index with one holding the sorted raw ids in IDS. */
+    private void write(byte[] ids) {
+        ByteBuffer header = ByteBuffer.allocate(IDS_START);
+        header.putInt(MAGIC).putInt(VERSION);
+        int[] counts = new int[256];
+        for (int i = 0; i < ids.length; i += Utils.UID_BYTES) {
+            counts[ids[i] & 0xFF] += 1;
+        }
+        int total = 0;
+        for (int b = 0; b < 256; b += 1) {
+            total += counts[b];
+            header.putInt(total);
+        }
+        Utils.writeContentsAtomically(file, header.array(), ids);
+        index = null;
+    }
+
+    private int fanOut(int b) {
+        return index.getInt(HEADER_SIZE + 4 * b);
+    }
+
+    /** Compare the id at position I in the index with the raw id KEY. */
+    private int compare(int i, byte[] key) {
+        int start = IDS_START + i * Utils.UID_BYTES;
+        for (int k = 0; k < Utils.UID_BYTES; k += 1) {
+            int diff = (index.get(start + k) & 0xFF) - (key[k] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /** Map the index file, rebuilding it first if it is missing or not
+     *  recognized. */
+    private void load() {
+        if (index != null) {
+            return;
+        }
+        if (!valid()) {
+            rebuild();
+            valid();
+        }
+    }
+
+    private boolean valid() {
+        if (!file.isFile()) {
+            return false;
+        }
+        stamp = Utils.stamp(file);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (index.capacity() < IDS_START || index.getInt(0) != MAGIC || index.getInt(4) != VERSION
+                || (index.capacity() - IDS_START) % Utils.UID_BYTES != 0) {
+            index = null;
+            return false;
+        }
+        count = (index.capacity() - IDS_START) / Utils.UID_BYTES;
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/** The set of commits in a repository, each kept in a file named by its id,
+ *  with their trees and blobs in an object store.  Commits are immutable
+ *  once written, so the commits most recently read are cached and handed
+ *  out again on later lookups of the same id.
+ */
+public class CommitStore {
+
+    private final File dir;
+    private final ObjectStore objects;
+    private final LruCache<String, Commit> cache;
+
+    /** A store of the commits in DIR, caching as many as fit in an
+     *  estimated CACHEBYTES bytes. */
+    public CommitStore(File dir, ObjectStore objects, long cacheBytes) {
+        this.dir = dir;
+        this.objects = objects;
+        this.cache = new LruCache<>(cacheBytes, Commit::estimatedSize);
+    }
+
+    /** Return the cache of commits read, for its statistics. */
+    public LruCache<String, Commit> getCache() {
+        return cache;
+    }
+
+    public File file(String id) {
+        return new File(dir, id);
+    }
+
+    public boolean contains(String id) {
+        return file(id).isFile();
+    }
+
+    /** Return the ids of all commits, in ascending order. */
+    public List<String> ids() {
+        List<String> result = new ArrayList<>();
+        for (String name : Utils.plainFilenamesIn(dir)) {
+            if (name.length() == Utils.UID_LENGTH) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /** Return the stamp of the directory of commits, which changes when a
+     *  commit is added or deleted. */
+    public long stamp() {
+        return Utils.stamp(dir);
+    }
+
+    public void delete(String id) {
+        cache.remove(id);
+        file(id).delete();
+    }
+
+    /** Return the commit with ID.  The result is shared and must not be
+     *  modified. */
+    public Commit get(String id) {
+        Commit c = cache.get(id);
+        if (c == null) {
+            c = Commit.decode(Utils.readContents(file(id)));
+            c.setHashValue(id);
+            c.setStore(objects);
+            cache.put(id, c);
+        }
+        return c;
+    }
+
+    /** Write C, whose hash value must already be set. */
+    public void put(Commit c) {
+        put(c, null);
+    }
+
+    /** Write C, whose hash value must already be set, when JOURNAL is
+     *  committed, or at once if it is null. */
+    public void put(Commit c, Journal journal) {
+        byte[] contents = c.encode();
+        if (journal == null) {
+            Utils.writeContents(file(c.getHashValue()), contents);
+        } else {
+            journal.write(file(c.getHashValue()), contents);
+        }
+        c.setStore(objects);
+        cache.put(c.getHashValue(), c);
+    }
+}
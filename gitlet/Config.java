@@ -0,0 +1,59 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Properties;
+
+/** Repository settings, read from a file of KEY=VALUE lines in the format of
+ *  java.util.Properties.  A system property named gitlet.KEY overrides the
+ *  file's setting for KEY.
+ */
+public class Config {
+
+    private final File file;
+    private Properties properties;
+    /** The stamp of the file when read. */
+    private long stamp;
+
+    public Config(File file) {
+        this.file = file;
+    }
+
+    /** Return the setting for KEY, or DEFAULTVALUE if there is none. */
+    public String get(String key, String defaultValue) {
+        String value = System.getProperty("gitlet." + key);
+        if (value != null) {
+            return value;
+        }
+        if (properties == null) {
+            properties = new Properties();
+            stamp = Utils.stamp(file);
+            if (file.isFile()) {
+                try {
+                    properties.load(new StringReader(Utils.readContentsAsString(file)));
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        }
+        return properties.getProperty(key, defaultValue);
+    }
+
+    /** Forget the settings if the file has changed since they were read. */
+    public void revalidate() {
+        if (properties != null && Utils.stamp(file) != stamp) {
+            properties = null;
+        }
+    }
+
+    /** Return the integer setting for KEY, or DEFAULTVALUE if there is none
+     *  or it is not a valid integer. */
+    public int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(key, Integer.toString(defaultValue)).trim());
+        } catch (NumberFormatException excp) {
+            return defaultValue;
+        }
+    }
+}
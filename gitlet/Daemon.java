@@ -0,0 +1,83 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/** A server, started by the command
+ *      java gitlet.Main daemon
+ *  in the root of a repository, that runs the commands sent to it by
+ *  Client over the Unix domain socket SOCKET, one at a time, in a single
+ *  long-lived JVM, so that its caches of commits, trees, packs and the
+ *  like stay warm between commands.  Before each command, whatever it
+ *  holds of files changed since they were read is discarded.  A request
+ *  is the number of arguments as a 4-byte integer followed by each
+ *  argument as written by DataOutputStream.writeUTF; the reply is what
+ *  the command prints, after which the connection is closed.
+ */
+class Daemon {
+
+    static final File SOCKET = new File(".gitlet/daemon.sock");
+
+    /** Serve commands until the process is killed.  A client that cannot
+     *  be served has the reason printed, and the daemon goes on to the
+     *  next. */
+    static void serve() {
+        SOCKET.delete();
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(SOCKET.toPath()));
+            SOCKET.deleteOnExit();
+            while (true) {
+                SocketChannel client = server.accept();
+                try {
+                    handle(client);
+                } catch (GitletException excp) {
+                    System.out.println(excp.getMessage());
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot start daemon: %s", excp.getMessage());
+        }
+    }
+
+    /** Run the command sent by CLIENT, sending it the output, then close
+     *  the connection.  The daemon and batch commands, which would take
+     *  over the daemon's own socket or standard input, are refused. */
+    private static void handle(SocketChannel client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(Channels.newInputStream(client));
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i += 1) {
+                args[i] = in.readUTF();
+            }
+            PrintStream out = new PrintStream(Channels.newOutputStream(client), false, StandardCharsets.UTF_8);
+            PrintStream stdout = System.out;
+            System.setOut(out);
+            try {
+                if (args.length > 0 && (args[0].equals("batch") || args[0].equals("daemon"))) {
+                    throw Utils.error("Cannot run %s in the daemon.", args[0]);
+                }
+                Main.run(args);
+            } catch (GitletException excp) {
+                System.out.println(excp.getMessage());
+            } catch (RuntimeException excp) {
+                System.out.println("Internal error: " + excp);
+            } finally {
+                System.setOut(stdout);
+                out.flush();
+            }
+        } catch (EOFException excp) {
+            throw Utils.error("Incomplete request from a client.");
+        } catch (IOException excp) {
+            throw Utils.error("Lost connection to a client: %s", excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+
+/** Binary deltas, which describe one byte array (the target) in terms of
+ *  another (the base).  A delta is a BinaryOutput holding the lengths of
+ *  the base and target as varints, followed by a sequence of instructions,
+ *  each either
+ *      INSERT  length  bytes    append the given bytes
+ *      COPY    offset  length   append that range of the base
+ *  with the opcode as one byte and the numbers as varints.
+ */
+class Delta {
+
+    private static final int INSERT = 0;
+    private static final int COPY = 1;
+    /** Length of the blocks of the base that matches are searched for. */
+    private static final int BLOCK = 16;
+
+    /** Return a delta from BASE to TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        HashMap<Integer, Integer> blocks = new HashMap<>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            blocks.putIfAbsent(hash(base, i), i);
+        }
+        BinaryOutput out = new BinaryOutput();
+        out.writeVarint(base.length);
+        out.writeVarint(target.length);
+        ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        int i = 0;
+        while (i < target.length) {
+            Integer start = i + BLOCK <= target.length ? blocks.get(hash(target, i)) : null;
+            int length = 0;
+            if (start != null) {
+                while (start + length < base.length && i + length < target.length
+                       && base[start + length] == target[i + length]) {
+                    length += 1;
+                }
+            }
+            if (length < BLOCK) {
+                pending.write(target[i]);
+                i += 1;
+                continue;
+            }
+            insert(out, pending);
+            out.writeByte(COPY);
+            out.writeVarint(start);
+            out.writeVarint(length);
+            i += length;
+        }
+        insert(out, pending);
+        return out.toByteArray();
+    }
+
+    /** Return the target obtained by applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        BinaryInput in = new BinaryInput(delta);
+        if (in.readVarint() != base.length) {
+            throw new IllegalArgumentException("delta does not match its base");
+        }
+        byte[] target = new byte[(int) in.readVarint()];
+        int position = 0;
+        while (position < target.length) {
+            int op = in.readByte();
+            if (op == COPY) {
+                int start = (int) in.readVarint();
+                int length = (int) in.readVarint();
+                if (start < 0 || length < 0 || start + length > base.length || position + length > target.length) {
+                    throw new IllegalArgumentException("malformed delta");
+                }
+                System.arraycopy(base, start, target, position, length);
+                position += length;
+            } else if (op == INSERT) {
+                for (long n = in.readVarint(); n > 0; n -= 1) {
+                    target[position++] = (byte) in.readByte();
+                }
+            } else {
+                throw new IllegalArgumentException("malformed delta");
+            }
+        }
+        return target;
+    }
+
+    /** Write an INSERT of the bytes in PENDING, if any, to OUT and empty
+     *  PENDING. */
+    private static void insert(BinaryOutput out, ByteArrayOutputStream pending) {
+        if (pending.size() == 0) {
+            return;
+        }
+        out.writeByte(INSERT);
+        out.writeVarint(pending.size());
+        out.writeBytes(pending.toByteArray());
+        pending.reset();
+    }
+
+    /** Return a hash of the BLOCK bytes of DATA starting at START. */
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int i = start; i < start + BLOCK; i += 1) {
+            h = 31 * h + data[i];
+        }
+        return h;
+    }
+}
@@ -0,0 +1,263 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/** Three-way merges of the lines of a file.  Each of the two new versions
+ *  of the file is diffed against their common base with Myers' algorithm,
+ *  giving hunks: ranges of base lines replaced by ranges of new lines.
+ *  Hunks from one side only are applied; hunks from both sides whose base
+ *  ranges overlap or touch form a conflict, written as
+ *      <<<<<<< HEAD
+ *      our lines
+ *      =======
+ *      their lines
+ *      >>>>>>>
+ *  unless both sides made the same change.  Lines keep their terminators,
+ *  so a final line without a newline runs into the following marker.
+ */
+class Diff3 {
+
+    private static final byte[] OURS_MARKER = "<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SEPARATOR = "=======\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] THEIRS_MARKER = ">>>>>>>\n".getBytes(StandardCharsets.UTF_8);
+    /** Beyond this many differing lines, the rest of a diff is treated as
+     *  one hunk rather than searched further. */
+    private static final int MAX_EDIT_DISTANCE = 2048;
+
+    /** The lines of a file's contents. */
+    private static class Lines {
+        private final byte[] bytes;
+        /** START[I] is the offset of line I; START[size()] is the length. */
+        private final int[] start;
+        /** Numbers equal for equal lines of all the files being merged. */
+        private final int[] ids;
+
+        Lines(byte[] bytes, HashMap<ByteBuffer, Integer> numbering) {
+            this.bytes = bytes;
+            List<Integer> starts = new ArrayList<>();
+            starts.add(0);
+            for (int i = 0; i < bytes.length; i += 1) {
+                if (bytes[i] == '\n' && i + 1 < bytes.length) {
+                    starts.add(i + 1);
+                }
+            }
+            int n = bytes.length == 0 ? 0 : starts.size();
+            start = new int[n + 1];
+            ids = new int[n];
+            for (int i = 0; i < n; i += 1) {
+                start[i] = starts.get(i);
+            }
+            start[n] = bytes.length;
+            for (int i = 0; i < n; i += 1) {
+                ByteBuffer line = ByteBuffer.wrap(bytes, start[i], start[i + 1] - start[i]).slice();
+                ids[i] = numbering.computeIfAbsent(line, k -> numbering.size());
+            }
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        void write(OutputStream out, int lo, int hi) throws IOException {
+            out.write(bytes, start[lo], start[hi] - start[lo]);
+        }
+
+        boolean sameLines(int lo, int hi, Lines other, int otherLo, int otherHi) {
+            if (hi - lo != otherHi - otherLo) {
+                return false;
+            }
+            for (int i = 0; i < hi - lo; i += 1) {
+                if (ids[lo + i] != other.ids[otherLo + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Write to OUT the merge of OURS and THEIRS, two versions of a file
+     *  whose common ancestor is BASE, and return true iff it has conflicts.
+     *  Binary contents are not merged line by line but conflict as a
+     *  whole. */
+    static boolean merge(byte[] base, byte[] ours, byte[] theirs, OutputStream out) throws IOException {
+        if (binary(base) || binary(ours) || binary(theirs)) {
+            conflict(ours, theirs, out);
+            return true;
+        }
+        HashMap<ByteBuffer, Integer> numbering = new HashMap<>();
+        Lines o = new Lines(base, numbering);
+        Lines a = new Lines(ours, numbering);
+        Lines b = new Lines(theirs, numbering);
+        List<int[]> oursHunks = diff(o.ids, a.ids);
+        List<int[]> theirsHunks = diff(o.ids, b.ids);
+
+        boolean conflicts = false;
+        int basePos = 0;
+        int aPos = 0;
+        int bPos = 0;
+        int i = 0;
+        int j = 0;
+        while (i < oursHunks.size() || j < theirsHunks.size()) {
+            // the next group of hunks: all those whose base ranges overlap
+            // or touch, starting from the earliest
+            int lo = Math.min(i < oursHunks.size() ? oursHunks.get(i)[0] : Integer.MAX_VALUE,
+                              j < theirsHunks.size() ? theirsHunks.get(j)[0] : Integer.MAX_VALUE);
+            int hi = lo;
+            int[] lastOurs = null;
+            int[] lastTheirs = null;
+            boolean grew = true;
+            while (grew) {
+                grew = false;
+                if (i < oursHunks.size() && oursHunks.get(i)[0] <= hi) {
+                    lastOurs = oursHunks.get(i++);
+                    hi = Math.max(hi, lastOurs[1]);
+                    grew = true;
+                }
+                if (j < theirsHunks.size() && theirsHunks.get(j)[0] <= hi) {
+                    lastTheirs = theirsHunks.get(j++);
+                    hi = Math.max(hi, lastTheirs[1]);
+                    grew = true;
+                }
+            }
+
+            o.write(out, basePos, lo);
+            aPos += lo - basePos;
+            bPos += lo - basePos;
+            int aHi = lastOurs == null ? aPos + hi - lo : lastOurs[3] + hi - lastOurs[1];
+            int bHi = lastTheirs == null ? bPos + hi - lo : lastTheirs[3] + hi - lastTheirs[1];
+            if (lastTheirs == null) {
+                a.write(out, aPos, aHi);
+            } else if (lastOurs == null || a.sameLines(aPos, aHi, b, bPos, bHi)) {
+                b.write(out, bPos, bHi);
+            } else {
+                conflicts = true;
+                out.write(OURS_MARKER);
+                a.write(out, aPos, aHi);
+                out.write(SEPARATOR);
+                b.write(out, bPos, bHi);
+                out.write(THEIRS_MARKER);
+            }
+            basePos = hi;
+            aPos = aHi;
+            bPos = bHi;
+        }
+        o.write(out, basePos, o.size());
+        return conflicts;
+    }
+
+    /** Write to OUT a conflict between the whole of OURS and THEIRS. */
+    static void conflict(byte[] ours, byte[] theirs, OutputStream out) throws IOException {
+        out.write(OURS_MARKER);
+        out.write(ours);
+        out.write(SEPARATOR);
+        out.write(theirs);
+        out.write(THEIRS_MARKER);
+    }
+
+    private static boolean binary(byte[] contents) {
+        for (byte b : contents) {
+            if (b == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the hunks of a shortest edit script from A to B, in order,
+     *  each as {start in A, end in A, start in B, end in B}. */
+    static List<int[]> diff(int[] a, int[] b) {
+        List<int[]> hunks = new ArrayList<>();
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix] == b[prefix]) {
+            prefix += 1;
+        }
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+               && a[a.length - 1 - suffix] == b[b.length - 1 - suffix]) {
+            suffix += 1;
+        }
+        int n = a.length - prefix - suffix;
+        int m = b.length - prefix - suffix;
+        if (n == 0 && m == 0) {
+            return hunks;
+        }
+
+        // trace.get(D)[K + D] is the furthest x reached on diagonal K = x - y
+        // with D edits
+        List<int[]> trace = new ArrayList<>();
+        int[] prev = null;
+        int distance = -1;
+        for (int d = 0; d <= n + m && distance < 0; d += 1) {
+            if (d > MAX_EDIT_DISTANCE) {
+                hunks.add(new int[] {prefix, prefix + n, prefix, prefix + m});
+                return hunks;
+            }
+            int[] cur = new int[2 * d + 1];
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (d == 0) {
+                    x = 0;
+                } else if (down(prev, d, k)) {
+                    x = prev[k + 1 + d - 1];
+                } else {
+                    x = prev[k - 1 + d - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[prefix + x] == b[prefix + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                cur[k + d] = x;
+                if (x >= n && y >= m) {
+                    distance = d;
+                }
+            }
+            trace.add(cur);
+            prev = cur;
+        }
+
+        int x = n;
+        int y = m;
+        int nextX = n;
+        int nextY = m;
+        for (int d = distance; d > 0; d -= 1) {
+            int[] before = trace.get(d - 1);
+            int k = x - y;
+            boolean down = down(before, d, k);
+            int prevK = down ? k + 1 : k - 1;
+            int prevX = before[prevK + d - 1];
+            int prevY = prevX - prevK;
+            int snakeX = down ? prevX : prevX + 1;
+            int snakeY = down ? prevY + 1 : prevY;
+            if (snakeX < x) {
+                if (x < nextX || y < nextY) {
+                    hunks.add(new int[] {prefix + x, prefix + nextX, prefix + y, prefix + nextY});
+                }
+                nextX = snakeX;
+                nextY = snakeY;
+            }
+            x = prevX;
+            y = prevY;
+        }
+        if (x < nextX || y < nextY) {
+            hunks.add(new int[] {prefix + x, prefix + nextX, prefix + y, prefix + nextY});
+        }
+        Collections.reverse(hunks);
+        return hunks;
+    }
+
+    /** True iff the furthest path to diagonal K with D edits comes down
+     *  from diagonal K + 1 (an insertion) rather than across from K - 1 (a
+     *  deletion), given PREV, the furthest x on each diagonal with D - 1
+     *  edits. */
+    private static boolean down(int[] prev, int d, int k) {
+        return k == -d || k != d && prev[k - 1 + d - 1] < prev[k + 1 + d - 1];
+    }
+}
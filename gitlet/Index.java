@@ -0,0 +1,272 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/** The staging area.  The index records, for every file that would be in
+ *  the next commit, the hash of its staged contents together with the
+ *  size, modification time and inode the working file had when that hash
+ *  was taken, and whether it is staged for addition (differs from HEAD).
+ *  It also records the files staged for removal.  A working file whose
+ *  stat still matches its entry is known to hold the entry's contents
+ *  without being read.
+ */
+public class Index {
+
+    /** Version of the binary format written by save. */
+    private static final int FORMAT_VERSION = 1;
+    private static final int STAGED = 1;
+
+    /** The staged contents of one file and the stat of its working copy. */
+    public static class Entry {
+        private final String hashValue;
+        private final long size;
+        private final long mtime;
+        private final long inode;
+        private final boolean staged;
+
+        Entry(String hashValue, long size, long mtime, long inode, boolean staged) {
+            this.hashValue = hashValue;
+            this.size = size;
+            this.mtime = mtime;
+            this.inode = inode;
+            this.staged = staged;
+        }
+
+        public String getHashValue() {
+            return hashValue;
+        }
+
+        /** True iff this file differs from its version in HEAD. */
+        public boolean isStaged() {
+            return staged;
+        }
+    }
+
+    private final File file;
+    private TreeMap<String, Entry> entries;
+    private TreeSet<String> removals;
+    /** Modification time of the index file when read.  Entries for files
+     *  modified no earlier than this may have changed again within the
+     *  clock's resolution, so are not trusted. */
+    private long indexTime;
+    private boolean changed;
+    /** The stamp of the index file when read. */
+    private long stamp;
+
+    public Index(File file) {
+        this.file = file;
+    }
+
+    public Entry get(String path) {
+        load();
+        return entries.get(path);
+    }
+
+    /** Return all entries, ordered by path. */
+    public Map<String, Entry> entries() {
+        load();
+        return entries;
+    }
+
+    public List<String> stagedFiles() {
+        load();
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().staged) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    public Set<String> removedFiles() {
+        load();
+        return removals;
+    }
+
+    public boolean hasStagedChanges() {
+        return !removedFiles().isEmpty() || !stagedFiles().isEmpty();
+    }
+
+    /** Return the hash of the contents of WORKINGFILE, the working copy of
+     *  PATH, if its stat shows it is unchanged since its entry was made, or
+     *  null if it must be read to find out. */
+    public String cachedHash(String path, File workingFile) {
+        Entry entry = get(path);
+        if (entry == null || entry.mtime >= indexTime) {
+            return null;
+        }
+        long[] stat = stat(workingFile);
+        if (stat[0] != entry.size || stat[1] != entry.mtime || stat[2] != entry.inode) {
+            return null;
+        }
+        return entry.hashValue;
+    }
+
+    /** Update the stat in PATH's entry to that of WORKINGFILE, which is
+     *  known to hold the entry's contents, if it is out of date. */
+    public void refresh(String path, File workingFile) {
+        Entry entry = get(path);
+        long[] stat = stat(workingFile);
+        if (stat[0] != entry.size || stat[1] != entry.mtime || stat[2] != entry.inode || entry.mtime >= indexTime) {
+            put(path, entry.hashValue, workingFile, entry.staged);
+        }
+    }
+
+    /** Record HASHVALUE, the contents of WORKINGFILE, as the version of PATH
+     *  to be committed, marking it staged for addition iff STAGED, and
+     *  unstage any removal of PATH. */
+    public void put(String path, String hashValue, File workingFile, boolean staged) {
+        load();
+        long[] stat = stat(workingFile);
+        entries.put(path, new Entry(hashValue, stat[0], stat[1], stat[2], staged));
+        removals.remove(path);
+        changed = true;
+    }
+
+    /** As for put, but for a file whose working copy has not been examined,
+     *  so that it will be read the next time it is hashed. */
+    public void put(String path, String hashValue, boolean staged) {
+        load();
+        entries.put(path, new Entry(hashValue, -1, -1, -1, staged));
+        removals.remove(path);
+        changed = true;
+    }
+
+    /** Drop PATH from the next commit, staging it for removal iff TRACKED. */
+    public void remove(String path, boolean tracked) {
+        load();
+        entries.remove(path);
+        if (tracked) {
+            removals.add(path);
+        }
+        changed = true;
+    }
+
+    /** Mark every entry as matching HEAD, after a commit. */
+    public void clearStaged() {
+        load();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.staged) {
+                e.setValue(new Entry(entry.hashValue, entry.size, entry.mtime, entry.inode, false));
+            }
+        }
+        removals.clear();
+        changed = true;
+    }
+
+    /** Replace the contents of the index with FILES, the files of the
+     *  commit just checked out, whose working copies below ROOT are up to
+     *  date. */
+    public void reset(Map<String, Blob> files, File root) {
+        load();
+        entries.clear();
+        removals.clear();
+        for (Map.Entry<String, Blob> entry : files.entrySet()) {
+            put(entry.getKey(), entry.getValue().getHashValue(), new File(root, entry.getKey()), false);
+        }
+        changed = true;
+    }
+
+    /** Forget the index if the file has changed since it was read, or
+     *  if it holds changes that were never saved. */
+    public void revalidate() {
+        if (entries != null && (changed || Utils.stamp(file) != stamp)) {
+            entries = null;
+        }
+    }
+
+    /** Write the index if it has changed since it was read. */
+    public void save() {
+        save(null);
+    }
+
+    /** Write the index when JOURNAL is committed, or at once if it is
+     *  null. */
+    public void save(Journal journal) {
+        load();
+        if (!changed) {
+            return;
+        }
+        BinaryOutput out = new BinaryOutput();
+        out.writeByte(FORMAT_VERSION);
+        out.writeVarint(entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            out.writeString(e.getKey());
+            out.writeHash(entry.hashValue);
+            out.writeVarint(entry.size);
+            out.writeVarint(entry.mtime);
+            out.writeVarint(entry.inode);
+            out.writeByte(entry.staged ? STAGED : 0);
+        }
+        out.writeVarint(removals.size());
+        for (String path : removals) {
+            out.writeString(path);
+        }
+        if (journal == null) {
+            Utils.writeContentsAtomically(file, out.toByteArray());
+        } else {
+            journal.write(file, out.toByteArray());
+        }
+        changed = false;
+    }
+
+    private void load() {
+        if (entries != null) {
+            return;
+        }
+        entries = new TreeMap<>();
+        removals = new TreeSet<>();
+        changed = false;
+        stamp = Utils.stamp(file);
+        if (!file.isFile()) {
+            indexTime = Long.MIN_VALUE;
+            return;
+        }
+        indexTime = stat(file)[1];
+        BinaryInput in = new BinaryInput(Utils.readContents(file));
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("unknown index format version " + version);
+        }
+        for (long n = in.readVarint(); n > 0; n -= 1) {
+            String path = in.readString();
+            entries.put(path, new Entry(in.readHash(), in.readVarint(), in.readVarint(), in.readVarint(),
+                                        (in.readByte() & STAGED) != 0));
+        }
+        for (long n = in.readVarint(); n > 0; n -= 1) {
+            removals.add(in.readString());
+        }
+    }
+
+    /** Return the size, modification time in nanoseconds and inode number
+     *  (or 0 where the file system has none) of F. */
+    private static long[] stat(File f) {
+        Path path = f.toPath();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long inode = 0;
+            try {
+                inode = ((Number) Files.getAttribute(path, "unix:ino")).longValue();
+            } catch (UnsupportedOperationException | IllegalArgumentException excp) {
+                inode = 0;
+            }
+            return new long[] {attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), inode};
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
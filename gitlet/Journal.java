@@ -0,0 +1,341 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/** A write-ahead journal making a transaction, such as a commit, all or
+ *  nothing.  The objects a transaction stores and the files it writes are
+ *  only logged while it runs; nothing reaches its final name until the
+ *  journal is committed.  Committing the journal writes the log to a
+ *  single file and forces it to disk, the one fsync on which the
+ *  transaction depends, then makes the logged writes without forcing
+ *  them.  Objects stored earlier that the transaction refers to, such as
+ *  the staged contents of files, are logged by id only.  The writes are
+ *  made durable lazily, by a checkpoint at the start of the next command
+ *  to change the repository, which forces them and the logged objects to
+ *  disk before emptying the journal, so that a crash before then can only
+ *  lose what the journal can redo.  If the process dies before the
+ *  journal is complete, its trailing checksum does not match and nothing
+ *  was written, so it is discarded; if after, recover redoes the whole
+ *  transaction, which is idempotent.  The journal file is
+ *      state        APPLIED once the writes have been made, else LOGGED,
+ *                   one byte, outside the checksum and never forced
+ *      count        varint number of records
+ *      records      each a kind byte, then
+ *                       OBJECT  varint length and the object's contents
+ *                       FILE    path relative to the base directory as a
+ *                               string, then varint length and contents
+ *                       STORED  the object's 20-byte id
+ *      checksum     SHA-1 of the count and records, 20 raw bytes
+ *  The file is emptied rather than removed, so that its directory entry
+ *  need only be made durable once.
+ */
+class Journal {
+
+    private static final int LOGGED = 0;
+    private static final int APPLIED = 1;
+    private static final int OBJECT = 0;
+    private static final int FILE = 1;
+    private static final int STORED = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File file;
+    private final File base;
+    private final ObjectStore store;
+    /** The contents of the objects logged. */
+    private final List<byte[]> objects = new ArrayList<>();
+    /** The files logged, and their contents. */
+    private final List<File> files = new ArrayList<>();
+    private final List<byte[]> fileContents = new ArrayList<>();
+    /** The ids of the stored objects the transaction refers to. */
+    private final Set<String> stored = new LinkedHashSet<>();
+
+    /** A journal kept in FILE for files below the directory BASE and
+     *  objects in STORE. */
+    Journal(File file, File base, ObjectStore store) {
+        this.file = file;
+        this.base = base;
+        this.store = store;
+    }
+
+    /** True iff the journal file FILE holds a transaction that has not
+     *  been checkpointed. */
+    static boolean pending(File file) {
+        return file.length() > 0;
+    }
+
+    /** True iff the journal file FILE holds a transaction whose writes may
+     *  not all have been made, so that it must be recovered before the
+     *  repository is read. */
+    static boolean unapplied(File file) {
+        if (!pending(file)) {
+            return false;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() != APPLIED;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Log that the object with CONTENTS is to be stored when the journal
+     *  is committed. */
+    void logObject(byte[] contents) {
+        objects.add(contents);
+    }
+
+    /** Log the object with HASHVALUE, already stored in a loose file, whose
+     *  file is to be made durable with the transaction. */
+    void logStored(String hashValue) {
+        stored.add(hashValue);
+    }
+
+    /** Log that TARGET is to be replaced by CONTENTS when the journal is
+     *  committed. */
+    void write(File target, byte[] contents) {
+        files.add(target);
+        fileContents.add(contents);
+    }
+
+    /** Make the transaction durable, then make the writes it logged.  The
+     *  journal file must have been checkpointed by recover. */
+    void commit() {
+        boolean created = !file.exists();
+        try (FileOutputStream journal = new FileOutputStream(file)) {
+            journal.write(LOGGED);
+            MessageDigest md = Utils.sha1Digest();
+            OutputStream out = new DigestOutputStream(new BufferedOutputStream(journal, BUFFER_SIZE), md);
+            BinaryOutput header = new BinaryOutput();
+            header.writeVarint(objects.size() + files.size() + stored.size());
+            out.write(header.toByteArray());
+            for (byte[] contents : objects) {
+                header = new BinaryOutput();
+                header.writeByte(OBJECT);
+                header.writeVarint(contents.length);
+                out.write(header.toByteArray());
+                out.write(contents);
+            }
+            String basePath = base.getAbsolutePath() + File.separator;
+            for (int i = 0; i < files.size(); i += 1) {
+                String path = files.get(i).getAbsolutePath();
+                if (!path.startsWith(basePath)) {
+                    throw new IllegalArgumentException(path + " is outside the journal's directory");
+                }
+                header = new BinaryOutput();
+                header.writeByte(FILE);
+                header.writeString(path.substring(basePath.length()));
+                header.writeVarint(fileContents.get(i).length);
+                out.write(header.toByteArray());
+                out.write(fileContents.get(i));
+            }
+            for (String hashValue : stored) {
+                header = new BinaryOutput();
+                header.writeByte(STORED);
+                header.writeHash(hashValue);
+                out.write(header.toByteArray());
+            }
+            out.flush();
+            journal.write(md.digest());
+            journal.getChannel().force(false);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (created) {
+            forceDirectory(file.getAbsoluteFile().getParentFile());
+        }
+
+        for (byte[] contents : objects) {
+            store.put(contents);
+        }
+        for (int i = 0; i < files.size(); i += 1) {
+            Utils.writeContentsAtomically(files.get(i), fileContents.get(i));
+        }
+    }
+
+    /** Record, without forcing it to disk, that the writes of the committed
+     *  transaction, and anything derived from them, have been made, so that
+     *  readers need not wait for it to be recovered.  Should the record
+     *  outlive writes lost in a crash of the system, the next command to
+     *  change the repository still finds them missing and redoes them. */
+    void applied() {
+        try (RandomAccessFile journal = new RandomAccessFile(file, "rw")) {
+            journal.write(APPLIED);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Checkpoint the transaction in the journal file FILE, for files below
+     *  BASE and objects in STORE, if there is one: discard it if it is
+     *  incomplete, redo it if its writes were not all made, and force its
+     *  writes to disk before emptying the file.  Return true iff the
+     *  transaction was redone.  This must be called, holding an exclusive
+     *  lock, before anything else changes the files the journal wrote,
+     *  since redoing it would undo those changes. */
+    static boolean recover(File file, File base, ObjectStore store) {
+        if (!pending(file)) {
+            return false;
+        }
+        if (!complete(file)) {
+            checkpoint(file, List.of());
+            return false;
+        }
+        boolean redo = unapplied(file);
+        List<File> written = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+            in.read();
+            for (long n = readVarint(in); n > 0; n -= 1) {
+                int kind = in.read();
+                if (kind == OBJECT) {
+                    byte[] contents = readBytes(in, readVarint(in));
+                    String hashValue = Utils.sha1(contents);
+                    if (redo || !intact(store, hashValue)) {
+                        // the stored copy may have been torn along with the
+                        // process, or lost with the system
+                        store.file(hashValue).delete();
+                        store.put(contents);
+                    }
+                    written.add(store.file(hashValue));
+                } else if (kind == FILE) {
+                    File target = new File(base, new String(readBytes(in, readVarint(in)), StandardCharsets.UTF_8));
+                    byte[] contents = readBytes(in, readVarint(in));
+                    if (redo || !Arrays.equals(contents, target.isFile() ? Utils.readContents(target) : null)) {
+                        target.getParentFile().mkdirs();
+                        Utils.writeContentsAtomically(target, contents);
+                        redo = true;
+                    }
+                    written.add(target);
+                } else if (kind == STORED) {
+                    written.add(store.file(Utils.toHex(readBytes(in, Utils.UID_BYTES), 0)));
+                } else {
+                    throw new IllegalArgumentException("malformed journal");
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        checkpoint(file, written);
+        return redo;
+    }
+
+    /** True iff the object with HASHVALUE can be read whole from STORE. */
+    private static boolean intact(ObjectStore store, String hashValue) {
+        try {
+            return store.contains(hashValue) && Utils.sha1(store.get(hashValue)).equals(hashValue);
+        } catch (IllegalArgumentException excp) {
+            return false;
+        }
+    }
+
+    /** True iff the journal file FILE is complete: its checksum matches the
+     *  records before it. */
+    private static boolean complete(File file) {
+        long length = file.length() - 1 - Utils.UID_BYTES;
+        if (length <= 0) {
+            return false;
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+            in.read();
+            MessageDigest md = Utils.sha1Digest();
+            copy(in, new DigestOutputStream(OutputStream.nullOutputStream(), md), length);
+            return Arrays.equals(md.digest(), in.readNBytes(Utils.UID_BYTES));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Force the files WRITTEN, then the directories holding them, to disk,
+     *  and only then empty the journal file FILE that would redo them. */
+    private static void checkpoint(File file, List<File> written) {
+        Set<File> directories = new LinkedHashSet<>();
+        for (File f : written) {
+            if (f.isFile()) {
+                force(f);
+                directories.add(f.getAbsoluteFile().getParentFile());
+            }
+        }
+        for (File directory : directories) {
+            forceDirectory(directory);
+        }
+        try (RandomAccessFile journal = new RandomAccessFile(file, "rw")) {
+            journal.setLength(0);
+            // a journal that reappeared would redo the transaction over any
+            // later changes to the files it wrote
+            journal.getChannel().force(false);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    private static void force(File f) {
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            channel.force(false);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Force the entries of DIRECTORY, such as files renamed into it, to
+     *  disk, where the platform allows a directory to be opened. */
+    private static void forceDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            // directories cannot be opened on some platforms, which make
+            // their entries durable along with the files
+        }
+    }
+
+    /** Copy exactly LENGTH bytes from IN to OUT. */
+    private static void copy(InputStream in, OutputStream out, long length) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(length, 1))];
+        while (length > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, length));
+            if (n < 0) {
+                throw new IOException("truncated journal");
+            }
+            out.write(buffer, 0, n);
+            length -= n;
+        }
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("truncated journal");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private static byte[] readBytes(InputStream in, long length) throws IOException {
+        byte[] result = in.readNBytes((int) length);
+        if (result.length != length) {
+            throw new IOException("truncated journal");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+package gitlet;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/** A map of bounded total weight that evicts its least recently used
+ *  entries to stay within the bound.  The weight of each value, an
+ *  estimate of the bytes it occupies, is given by a function, and is
+ *  taken again whenever the value is looked up, since a value may grow as
+ *  it is used (a commit reads in its files on demand).  A value heavier
+ *  than the whole bound is not kept.  Hits and misses are counted.
+ */
+public class LruCache<K, V> {
+
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<K, Long> weights = new HashMap<>();
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /** A cache holding values of total weight at most MAXWEIGHT, as
+     *  estimated by WEIGHER. */
+    public LruCache(long maxWeight, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /** Return the value for KEY, or null if it is not cached. */
+    public V get(K key) {
+        V value = entries.get(key);
+        if (value == null) {
+            misses += 1;
+            return null;
+        }
+        hits += 1;
+        reweigh(key, value);
+        trim();
+        return value;
+    }
+
+    /** Cache VALUE for KEY, evicting the least recently used entries as
+     *  needed. */
+    public void put(K key, V value) {
+        remove(key);
+        if (weigher.applyAsLong(value) > maxWeight) {
+            return;
+        }
+        entries.put(key, value);
+        reweigh(key, value);
+        trim();
+    }
+
+    public void remove(K key) {
+        if (entries.remove(key) != null) {
+            weight -= weights.remove(key);
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+        weights.clear();
+        weight = 0;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** Return the estimated total weight of the cached values. */
+    public long weight() {
+        return weight;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries, %d bytes, %d hits, %d misses, %d evictions",
+                             size(), weight, hits, misses, evictions);
+    }
+
+    private void reweigh(K key, V value) {
+        long w = weigher.applyAsLong(value);
+        Long old = weights.put(key, w);
+        weight += w - (old == null ? 0 : old);
+    }
+
+    /** Evict least recently used entries until the total weight is within
+     *  the bound. */
+    private void trim() {
+        while (weight > maxWeight && !entries.isEmpty()) {
+            K eldest = entries.keySet().iterator().next();
+            remove(eldest);
+            evictions += 1;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/** A benchmark of finding merge bases in a deep history, which may be run
+ *  as
+ *      java gitlet.MergeBaseBenchmark [COMMITS [DIVERGED [ROUNDS]]]
+ *  It builds, in a scratch repository, a line of COMMITS commits (20000 by
+ *  default) from which two branches of DIVERGED commits each (10 by
+ *  default) fork, and reports the average time over ROUNDS rounds (1000
+ *  by default) of CommitGraph.mergeBase on the two branch heads, against
+ *  that of a walk that, like the search it replaced, reads every ancestor
+ *  of one head from the commit store before walking back from the other.
+ */
+public class MergeBaseBenchmark {
+
+    public static void main(String... args) throws IOException {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int diverged = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        Path root = Files.createTempDirectory("gitlet-bench");
+        try {
+            Repository repo = new Repository(root.toFile());
+            repo.init();
+            String tree = repo.head().getTree();
+            String fork = line(repo, repo.head().getHashValue(), tree, "trunk", commits);
+            String first = line(repo, fork, tree, "first", diverged);
+            String second = line(repo, fork, tree, "second", diverged);
+            repo.graph.rebuild();
+
+            String base = repo.graph.mergeBase(first, second);
+            if (!base.equals(fork) || !fork.equals(walk(repo.commitStore, first, second))) {
+                throw new IllegalStateException("merge bases disagree");
+            }
+            System.out.printf("%d commits, branches of %d, %d rounds%n", commits, diverged, rounds);
+            time("generation-ordered mergeBase", rounds, () -> repo.graph.mergeBase(first, second));
+            time("full ancestor walk", rounds, () -> walk(repo.commitStore, first, second));
+        } finally {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /** Store a line of COUNT commits of TREE, the first a child of PARENT,
+     *  with messages starting with NAME, and return the id of the last. */
+    private static String line(Repository repo, String parent, String tree, String name, int count) {
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < count; i += 1) {
+            Commit c = new Commit(name + " " + i, tree, parent, time + i);
+            c.setHashValue(Utils.sha1(c.encode()));
+            repo.commitStore.put(c);
+            parent = c.getHashValue();
+        }
+        return parent;
+    }
+
+    /** Return the first commit reached from SECOND, breadth first, that is
+     *  an ancestor of FIRST, having read every ancestor of FIRST from
+     *  COMMITS. */
+    private static String walk(CommitStore commits, String first, String second) {
+        Set<String> ancestors = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(first);
+        while (!pending.isEmpty()) {
+            String id = pending.remove();
+            if (ancestors.add(id)) {
+                Commit c = commits.get(id);
+                if (c.getParent() != null) {
+                    pending.add(c.getParent());
+                }
+                if (c.getMergeParent() != null) {
+                    pending.add(c.getMergeParent());
+                }
+            }
+        }
+        Set<String> seen = new HashSet<>();
+        pending.add(second);
+        while (!pending.isEmpty()) {
+            String id = pending.remove();
+            if (ancestors.contains(id)) {
+                return id;
+            }
+            if (seen.add(id)) {
+                Commit c = commits.get(id);
+                if (c.getParent() != null) {
+                    pending.add(c.getParent());
+                }
+                if (c.getMergeParent() != null) {
+                    pending.add(c.getMergeParent());
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Run ACTION ROUNDS times, after as many rounds of warm-up, and print
+     *  the average time it took under the heading NAME. */
+    static void time(String name, int rounds, Runnable action) {
+        for (int i = 0; i < rounds; i += 1) {
+            action.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i += 1) {
+            action.run();
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / rounds;
+        System.out.printf("  %-32s %12.1f us/op%n", name, micros);
+    }
+}
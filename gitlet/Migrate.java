@@ -0,0 +1,229 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/** A tool that converts the .gitlet directory in the current directory from
+ *  the original layout, in which commits, HEAD and branches were stored as
+ *  serialized Java objects and blobs as .gitlet/commits/blobs/HASHNAME, to
+ *  the current one.  It may be invoked as
+ *      java gitlet.Migrate
+ *  Commit ids change, since they are hashes of the new commit format; the
+ *  ids of file contents do not.  The repository is locked exclusively
+ *  while it is converted.
+ */
+public class Migrate {
+
+    static final File LEGACY_BLOBS = new File(".gitlet/commits/blobs");
+    static final File LEGACY_STAGING = new File(".gitlet/staging");
+    static final File LEGACY_STAGING_ADDITION = new File(".gitlet/staging/addition");
+    static final File LEGACY_STAGING_REMOVAL = new File(".gitlet/staging/removal");
+    static final File LEGACY_INITIAL = new File(".gitlet/info/initial");
+    static final String LEGACY_SENTINEL = "sentinel";
+
+    /** The fields of a commit as originally serialized.  The field names and
+     *  types must match those of the original gitlet.Commit exactly. */
+    static class LegacyCommit implements Serializable {
+        /** Any value serves, since LegacyInputStream replaces the stream's
+         *  descriptor of the original class with this class's own. */
+        private static final long serialVersionUID = 1L;
+
+        private String message;
+        private String hashValue;
+        private String time;
+        private HashMap<String, LegacyBlob> blobs;
+        private String parent;
+        private String mergeParent;
+    }
+
+    /** The fields of a blob as originally serialized. */
+    static class LegacyBlob implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private File fileName;
+        private String hashValue;
+    }
+
+    /** An input stream that reads objects written as the original
+     *  gitlet.Commit and gitlet.Blob into LegacyCommit and LegacyBlob. */
+    private static class LegacyInputStream extends ObjectInputStream {
+        LegacyInputStream(File file) throws IOException {
+            super(new FileInputStream(file));
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass descriptor = super.readClassDescriptor();
+            switch (descriptor.getName()) {
+                case "gitlet.Commit":
+                    return ObjectStreamClass.lookup(LegacyCommit.class);
+                case "gitlet.Blob":
+                    return ObjectStreamClass.lookup(LegacyBlob.class);
+                default:
+                    return descriptor;
+            }
+        }
+    }
+
+    public static void main(String... args) {
+        if (!Main.REPO.exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            System.exit(0);
+        }
+        if (!LEGACY_BLOBS.isDirectory()) {
+            System.out.println("Nothing to migrate.");
+            System.exit(0);
+        }
+        RepositoryLock lock = Main.REPO.lock(true);
+        try {
+            new Migrate(Main.REPO).migrate();
+        } finally {
+            lock.close();
+        }
+    }
+
+    private final Repository repo;
+    private final SimpleDateFormat legacyDateFormat = new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy Z");
+    private final Map<String, LegacyCommit> legacyCommits = new HashMap<>();
+    /** Maps the id of each converted commit to its new id. */
+    private final Map<String, String> newIds = new HashMap<>();
+    private String emptyTree;
+
+    private Migrate(Repository repo) {
+        this.repo = repo;
+    }
+
+    private void migrate() {
+        repo.objects.init();
+        emptyTree = new Tree().write(repo.objects);
+        for (File f : repo.commits.listFiles()) {
+            if (!f.getName().equals(LEGACY_SENTINEL)) {
+                legacyCommits.put(f.getName(), readLegacy(f));
+            }
+        }
+        for (String id : legacyCommits.keySet()) {
+            convertHistory(id);
+        }
+
+        for (File f : repo.branches.listFiles()) {
+            Refs.write(f, newIds.get(readLegacy(f).hashValue));
+        }
+        Refs.write(repo.head, newIds.get(readLegacy(repo.head).hashValue));
+        LEGACY_INITIAL.delete();
+        migrateStagingArea();
+
+        Set<String> converted = new HashSet<>(newIds.values());
+        for (String id : legacyCommits.keySet()) {
+            if (!converted.contains(id)) {
+                repo.commitStore.file(id).delete();
+            }
+        }
+        repo.commitStore.file(LEGACY_SENTINEL).delete();
+        for (File f : LEGACY_BLOBS.listFiles()) {
+            f.delete();
+        }
+        LEGACY_BLOBS.delete();
+        // only now are the converted commits alone in the commit store
+        repo.commitIndex.rebuild();
+        repo.graph.rebuild();
+        for (String id : repo.unreadableCommits()) {
+            System.out.println("Skipped unreadable commit " + id + ".");
+        }
+    }
+
+    /** Build the index from HEAD and the files in the legacy staging
+     *  directories, then remove them. */
+    private void migrateStagingArea() {
+        Commit head = repo.commitStore.get(Refs.read(repo.head));
+        for (Map.Entry<String, Blob> entry : head.getBlobs().entrySet()) {
+            repo.index.put(entry.getKey(), entry.getValue().getHashValue(), false);
+        }
+        for (File f : LEGACY_STAGING_ADDITION.listFiles()) {
+            repo.index.put(f.getName(), repo.objects.put(f), true);
+            f.delete();
+        }
+        for (File f : LEGACY_STAGING_REMOVAL.listFiles()) {
+            repo.index.remove(f.getName(), true);
+            f.delete();
+        }
+        repo.index.save();
+        LEGACY_STAGING_ADDITION.delete();
+        LEGACY_STAGING_REMOVAL.delete();
+        LEGACY_STAGING.delete();
+    }
+
+    private LegacyCommit readLegacy(File file) {
+        try (ObjectInputStream in = new LegacyInputStream(file)) {
+            return (LegacyCommit) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException excp) {
+            throw new IllegalArgumentException(file + ": " + excp.getMessage());
+        }
+    }
+
+    /** True iff the legacy parent ID refers to a commit. */
+    private static boolean isCommit(String id) {
+        return id != null && !id.equals(LEGACY_SENTINEL);
+    }
+
+    /** Convert the legacy commit ID and those of its ancestors not yet
+     *  converted, each after its parents.  The history is walked with an
+     *  explicit stack, however long it is. */
+    private void convertHistory(String id) {
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(id);
+        while (!pending.isEmpty()) {
+            String next = pending.peek();
+            if (newIds.containsKey(next)) {
+                pending.pop();
+                continue;
+            }
+            LegacyCommit legacy = legacyCommits.get(next);
+            boolean ready = true;
+            for (String parent : new String[] {legacy.parent, legacy.mergeParent}) {
+                if (isCommit(parent) && !newIds.containsKey(parent)) {
+                    pending.push(parent);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                pending.pop();
+                convert(next, legacy);
+            }
+        }
+    }
+
+    /** Write the converted form of LEGACY, the legacy commit ID, whose
+     *  parents must already have been converted. */
+    private void convert(String id, LegacyCommit legacy) {
+        Map<String, Blob> files = new HashMap<>();
+        for (Map.Entry<String, LegacyBlob> entry : legacy.blobs.entrySet()) {
+            String hashValue = entry.getValue().hashValue;
+            File contents = new File(LEGACY_BLOBS, hashValue + entry.getKey());
+            files.put(entry.getKey(), new Blob(repo.objects.put(contents)));
+        }
+        long time;
+        try {
+            time = legacyDateFormat.parse(legacy.time).getTime();
+        } catch (ParseException excp) {
+            throw new IllegalArgumentException("bad commit time in " + id);
+        }
+        String parent = isCommit(legacy.parent) ? newIds.get(legacy.parent) : null;
+        Commit c = new Commit(legacy.message, Tree.update(repo.objects, emptyTree, files), parent, time);
+        c.setMergeParent(isCommit(legacy.mergeParent) ? newIds.get(legacy.mergeParent) : null);
+        c.setHashValue(Utils.sha1(c.encode()));
+        repo.commitStore.put(c);
+        newIds.put(id, c.getHashValue());
+    }
+}
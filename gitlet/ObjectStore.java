@@ -0,0 +1,423 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/** A content-addressed store of file contents.  Each object is kept in a
+ *  file named by the SHA-1 hash of its contents, fanned out into
+ *  subdirectories named by the first two hex digits of that hash, so that
+ *  identical contents are stored exactly once regardless of how many file
+ *  names refer to them.  An object file begins with a HEADER_SIZE-byte
+ *  header giving the code of the Codec its contents are encoded with and
+ *  their decoded length; new objects are encoded with the codec named by
+ *  the core.compression setting, except for files of types that are
+ *  already compressed, which are stored raw.  Objects may also be moved
+ *  into a Pack in the pack subdirectory, where they are found when there
+ *  is no loose file for them.
+ */
+public class ObjectStore {
+
+    /** Number of leading hex digits used to name the fan-out directory. */
+    private static final int FAN_OUT_DIGITS = 2;
+    private static final int HEADER_SIZE = 1 + 8;
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Extensions of files whose contents would not shrink if compressed. */
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+        "7z", "bz2", "gif", "gz", "jar", "jpeg", "jpg", "mp3", "mp4", "pdf", "png", "webp", "xz", "zip", "zst");
+
+    private final File dir;
+    private final File packDir;
+    /** The directory in which objects are written before they are moved to
+     *  their fan-out directories, so that what a process that died left
+     *  behind can be found without listing every object. */
+    private final File tempDir;
+    private final Config config;
+    private Codec codec;
+    private List<Pack> packs;
+    /** The stamp of the pack directory when the packs were listed. */
+    private long packsStamp;
+    /** The journal of the transaction in progress, if any. */
+    private Journal journal;
+
+    public ObjectStore(File dir, Config config) {
+        this.dir = dir;
+        this.packDir = new File(dir, "pack");
+        this.tempDir = new File(dir, "tmp");
+        this.config = config;
+    }
+
+    /** Create the store's top-level directory. */
+    public void init() {
+        dir.mkdirs();
+    }
+
+    /** Return the directories in which writes that never finished may have
+     *  left temporary files. */
+    public List<File> tempDirectories() {
+        return List.of(tempDir, packDir);
+    }
+
+    /** Return the file holding the object with HASHVALUE. */
+    public File file(String hashValue) {
+        return Utils.join(dir, hashValue.substring(0, FAN_OUT_DIGITS), hashValue.substring(FAN_OUT_DIGITS));
+    }
+
+    public boolean contains(String hashValue) {
+        return file(hashValue).isFile() || pack(hashValue) != null;
+    }
+
+    /** Store CONTENTS if they are not already present and return their
+     *  hash.  While a journal is set, they are only logged to it, to be
+     *  stored when it is committed. */
+    public String put(byte[] contents) {
+        String hashValue = Utils.sha1(contents);
+        File objectFile = file(hashValue);
+        if (contains(hashValue)) {
+            return hashValue;
+        }
+        if (journal != null) {
+            journal.logObject(contents);
+            return hashValue;
+        }
+        objectFile.getParentFile().mkdirs();
+        tempDir.mkdirs();
+        try {
+            install(write(tempDir, new ByteArrayInputStream(contents), codec(), null),
+                    objectFile);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return hashValue;
+    }
+
+    /** Log the objects put from bytes to JOURNAL, rather than storing them,
+     *  until this is called again with null. */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /** Store the contents of SOURCE if they are not already present and
+     *  return their hash.  SOURCE is streamed, never read into memory
+     *  whole. */
+    public String put(File source) {
+        String hashValue = Utils.sha1(source);
+        File objectFile = file(hashValue);
+        if (contains(hashValue)) {
+            return hashValue;
+        }
+        objectFile.getParentFile().mkdirs();
+        String name = source.getName();
+        Codec sourceCodec = COMPRESSED_TYPES.contains(name.substring(name.lastIndexOf('.') + 1).toLowerCase())
+            ? Codec.RAW : codec();
+        try (InputStream in = new FileInputStream(source)) {
+            // hash the copy itself, in case SOURCE changed since it was hashed
+            MessageDigest md = Utils.sha1Digest();
+            tempDir.mkdirs();
+            File temp = write(tempDir, in, sourceCodec, md);
+            hashValue = Utils.toHex(md.digest(), 0);
+            objectFile = file(hashValue);
+            objectFile.getParentFile().mkdirs();
+            install(temp, objectFile);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return hashValue;
+    }
+
+    /** Return a stream of the contents of the object with HASHVALUE, which
+     *  the caller must close. */
+    public InputStream open(String hashValue) {
+        Pack pack = loose(hashValue) ? null : pack(hashValue);
+        if (pack != null) {
+            return new ByteArrayInputStream(pack.get(hashValue));
+        }
+        FileChannel channel = openChannel(hashValue);
+        try {
+            Codec objectCodec = Codec.forCode(readHeader(channel).get(0));
+            return objectCodec.decode(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+        } catch (RuntimeException excp) {
+            close(channel);
+            throw excp;
+        }
+    }
+
+    public byte[] get(String hashValue) {
+        try (InputStream in = open(hashValue)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    public String getAsString(String hashValue) {
+        return new String(get(hashValue), StandardCharsets.UTF_8);
+    }
+
+    /** Return the length of the contents of the object with HASHVALUE. */
+    public long size(String hashValue) {
+        Pack pack = loose(hashValue) ? null : pack(hashValue);
+        if (pack != null) {
+            return pack.size(hashValue);
+        }
+        try (FileChannel channel = openChannel(hashValue)) {
+            return readHeader(channel).getLong(1);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Replace the contents of DEST with the object with HASHVALUE.  Raw
+     *  objects are transferred between channels rather than read into
+     *  memory; others are decoded a buffer at a time. */
+    public void copyTo(String hashValue, File dest) {
+        Pack pack = loose(hashValue) ? null : pack(hashValue);
+        if (pack != null) {
+            Utils.writeContents(dest, pack.get(hashValue));
+            return;
+        }
+        try (FileChannel in = openChannel(hashValue);
+             FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.WRITE,
+                                                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Codec objectCodec = Codec.forCode(readHeader(in).get(0));
+            if (objectCodec == Codec.RAW) {
+                long size = in.size();
+                for (long pos = HEADER_SIZE; pos < size; ) {
+                    pos += in.transferTo(pos, size - pos, out);
+                }
+            } else {
+                try (InputStream decoded = objectCodec.decode(Channels.newInputStream(in))) {
+                    decoded.transferTo(Channels.newOutputStream(out));
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Move every object into a single new pack, storing the object X as a
+     *  delta against the object BASES.get(X) where that saves space, and
+     *  delete the loose objects and the old packs.  Return the number of
+     *  objects packed. */
+    public int repack(Map<String, String> bases) {
+        List<String> loose = looseIds();
+        Set<String> ids = new TreeSet<>(loose);
+        for (Pack pack : packs()) {
+            ids.addAll(pack.ids());
+        }
+        packDir.mkdirs();
+        Pack result = Pack.write(packDir, this, new ArrayList<>(ids), bases);
+        for (Pack pack : packs()) {
+            if (!pack.getIndexFile().equals(result.getIndexFile())) {
+                pack.delete();
+            }
+        }
+        packs = new ArrayList<>(List.of(result));
+        for (String id : loose) {
+            file(id).delete();
+            file(id).getParentFile().delete();
+        }
+        return ids.size();
+    }
+
+    /** Return the ids of all objects, loose or packed, in ascending order. */
+    public List<String> ids() {
+        Set<String> ids = new TreeSet<>(looseIds());
+        for (Pack pack : packs()) {
+            ids.addAll(pack.ids());
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /** Delete every object for which KEEP is false, unless it was written at
+     *  or after CUTOFF, in milliseconds since the epoch.  A pack holding
+     *  such objects is rewritten without them.  Return the number of
+     *  objects deleted. */
+    public int prune(Predicate<String> keep, long cutoff) {
+        int deleted = 0;
+        for (String id : looseIds()) {
+            File f = file(id);
+            if (!keep.test(id) && f.lastModified() < cutoff) {
+                f.delete();
+                f.getParentFile().delete();
+                deleted += 1;
+            }
+        }
+        List<Pack> result = new ArrayList<>();
+        for (Pack pack : packs()) {
+            List<String> ids = pack.ids();
+            List<String> kept = new ArrayList<>();
+            for (String id : ids) {
+                if (keep.test(id)) {
+                    kept.add(id);
+                }
+            }
+            if (kept.size() == ids.size() || pack.lastModified() >= cutoff) {
+                result.add(pack);
+                continue;
+            }
+            if (!kept.isEmpty()) {
+                result.add(Pack.write(packDir, this, kept, pack.bases()));
+            }
+            pack.delete();
+            deleted += ids.size() - kept.size();
+        }
+        packs = result;
+        return deleted;
+    }
+
+    /** Return the ids of the objects kept in loose files. */
+    private List<String> looseIds() {
+        List<String> result = new ArrayList<>();
+        String[] names = dir.list();
+        for (String prefix : names == null ? new String[0] : names) {
+            if (prefix.length() != FAN_OUT_DIGITS) {
+                continue;
+            }
+            for (String rest : Utils.plainFilenamesIn(new File(dir, prefix))) {
+                if (rest.length() == Utils.UID_LENGTH - FAN_OUT_DIGITS) {
+                    result.add(prefix + rest);
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean loose(String hashValue) {
+        return file(hashValue).isFile();
+    }
+
+    /** Return the pack holding the object with HASHVALUE, or null. */
+    private Pack pack(String hashValue) {
+        for (Pack pack : packs()) {
+            if (pack.contains(hashValue)) {
+                return pack;
+            }
+        }
+        return null;
+    }
+
+    /** Return the packs, listing them if they have not been listed.  This
+     *  and codec() are synchronized, since the threads of a WorkingTree
+     *  storing files in parallel may be the first to call them, and the
+     *  list is only published once complete. */
+    private synchronized List<Pack> packs() {
+        if (packs == null) {
+            List<Pack> result = new ArrayList<>();
+            packsStamp = Utils.stamp(packDir);
+            String[] names = packDir.list();
+            for (String name : names == null ? new String[0] : names) {
+                if (name.endsWith(".idx")) {
+                    result.add(new Pack(new File(packDir, name)));
+                }
+            }
+            packs = result;
+        }
+        return packs;
+    }
+
+    /** Forget the packs if the pack directory has changed since they were
+     *  listed, and the codec, which may have been reconfigured. */
+    public synchronized void revalidate() {
+        if (packs != null && Utils.stamp(packDir) != packsStamp) {
+            packs = null;
+        }
+        codec = null;
+    }
+
+    /** Return the codec with which new objects are encoded. */
+    private synchronized Codec codec() {
+        if (codec == null) {
+            codec = Codec.forName(config.get("core.compression", "deflate"));
+        }
+        return codec;
+    }
+
+    /** Write the contents of IN, encoded with OBJECTCODEC and preceded by
+     *  a header, to a new temporary file in DIRECTORY and return it.  If MD
+     *  is not null, it is updated with the contents. */
+    private static File write(File directory, InputStream in, Codec objectCodec, MessageDigest md)
+            throws IOException {
+        File temp = File.createTempFile(".object-", Utils.TEMP_SUFFIX, directory);
+        long size = 0;
+        try (FileOutputStream file = new FileOutputStream(temp)) {
+            file.write(new byte[HEADER_SIZE]);
+            OutputStream out = objectCodec.encode(file);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                if (md != null) {
+                    md.update(buffer, 0, n);
+                }
+                out.write(buffer, 0, n);
+                size += n;
+            }
+            out.close();
+        }
+        try (RandomAccessFile header = new RandomAccessFile(temp, "rw")) {
+            header.writeByte(objectCodec.code());
+            header.writeLong(size);
+        }
+        return temp;
+    }
+
+    /** Rename TEMP to OBJECTFILE.  Objects are written under a unique name
+     *  and renamed so that concurrent writers of the same object never
+     *  expose a partial file. */
+    private static void install(File temp, File objectFile) throws IOException {
+        Files.move(temp.toPath(), objectFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                   StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private FileChannel openChannel(String hashValue) {
+        try {
+            return FileChannel.open(file(hashValue).toPath(), StandardOpenOption.READ);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Read the header from the start of CHANNEL, leaving it positioned at
+     *  the encoded contents. */
+    private static ByteBuffer readHeader(FileChannel channel) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try {
+            while (header.hasRemaining() && channel.read(header) != -1) {
+                continue;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (header.hasRemaining()) {
+            throw new IllegalArgumentException("truncated object");
+        }
+        return header;
+    }
+
+    private static void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
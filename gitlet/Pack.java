@@ -0,0 +1,367 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** A set of objects stored together in one pack file, with an index file
+ *  for finding them.  The pack file holds a HEADER_SIZE-byte header (magic
+ *  number and version) and then one entry per object:
+ *      type          FULL or DELTA, one byte
+ *      size          length of the object's contents, varint
+ *      base          for a DELTA, the 20-byte id of its base object
+ *      data length   length of the contents or delta, varint
+ *      stored length length of the compressed data that follows, varint
+ *  followed by the contents or Delta, compressed with Deflater.  The base
+ *  of a delta is always in the same pack.  The index file holds a header,
+ *  a fan-out table of 256 4-byte counts, as in CommitIndex, the ids of the
+ *  objects as raw 20-byte hashes in ascending order, and the 8-byte offset
+ *  of each object's entry in the pack file.  Both files are mapped into
+ *  memory when first used.
+ */
+class Pack {
+
+    private static final int PACK_MAGIC = 0x47504b46;
+    private static final int INDEX_MAGIC = 0x47504b49;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int IDS_START = HEADER_SIZE + 256 * 4;
+    /** The longest entry header: type, three varints and a hash. */
+    private static final int MAX_ENTRY_HEADER = 1 + 3 * 10 + Utils.UID_BYTES;
+    private static final int FULL = 0;
+    private static final int DELTA = 1;
+    /** The longest chain of deltas through which an object is reached. */
+    private static final int MAX_DEPTH = 16;
+
+    private final File indexFile;
+    private final File packFile;
+    private ByteBuffer index;
+    private ByteBuffer pack;
+    private int count;
+
+    /** The pack whose index is INDEXFILE. */
+    Pack(File indexFile) {
+        this.indexFile = indexFile;
+        String name = indexFile.getName();
+        this.packFile = new File(indexFile.getParentFile(), name.substring(0, name.length() - ".idx".length()) + ".pack");
+    }
+
+    File getIndexFile() {
+        return indexFile;
+    }
+
+    boolean contains(String hashValue) {
+        return find(hashValue) >= 0;
+    }
+
+    /** Return the ids of all the objects in this pack, in ascending order. */
+    List<String> ids() {
+        load();
+        List<String> result = new ArrayList<>(count);
+        byte[] id = new byte[Utils.UID_BYTES];
+        for (int i = 0; i < count; i += 1) {
+            index.get(IDS_START + i * Utils.UID_BYTES, id);
+            result.add(Utils.toHex(id, 0));
+        }
+        return result;
+    }
+
+    /** Return a map from the id of each object stored as a delta to the id
+     *  of its base. */
+    Map<String, String> bases() {
+        Map<String, String> result = new HashMap<>();
+        for (String id : ids()) {
+            BinaryInput in = entryHeader(offset(id));
+            if (in.readByte() == DELTA) {
+                in.readVarint();
+                result.put(id, in.readHash());
+            }
+        }
+        return result;
+    }
+
+    /** Return the time at which the pack was written, in milliseconds since
+     *  the epoch. */
+    long lastModified() {
+        return packFile.lastModified();
+    }
+
+    /** Return the length of the contents of the object with HASHVALUE,
+     *  which must be in this pack. */
+    long size(String hashValue) {
+        BinaryInput in = entryHeader(offset(hashValue));
+        in.readByte();
+        return in.readVarint();
+    }
+
+    /** Return the contents of the object with HASHVALUE, which must be in
+     *  this pack.  The chain of deltas down to a full entry is read first,
+     *  and the deltas then applied from the bottom up, so that each base on
+     *  the way is decoded once. */
+    byte[] get(String hashValue) {
+        List<String> chain = new ArrayList<>();
+        List<byte[]> data = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        for (String id = hashValue; id != null; ) {
+            if (chain.size() > MAX_DEPTH) {
+                throw new IllegalArgumentException("corrupt pack entry for " + hashValue);
+            }
+            long offset = offset(id);
+            BinaryInput in = entryHeader(offset);
+            int type = in.readByte();
+            sizes.add(in.readVarint());
+            String base = type == DELTA ? in.readHash() : null;
+            int dataLength = (int) in.readVarint();
+            int storedLength = (int) in.readVarint();
+            byte[] stored = new byte[storedLength];
+            pack.get((int) offset + in.position(), stored);
+            chain.add(id);
+            data.add(inflate(stored, dataLength));
+            id = base;
+        }
+        byte[] contents = null;
+        for (int i = chain.size() - 1; i >= 0; i -= 1) {
+            contents = contents == null ? data.get(i) : Delta.apply(contents, data.get(i));
+            if (contents.length != sizes.get(i)) {
+                throw new IllegalArgumentException("corrupt pack entry for " + chain.get(i));
+            }
+        }
+        return contents;
+    }
+
+    /** Delete the pack, its index first so that it is never seen without
+     *  its pack file. */
+    void delete() {
+        indexFile.delete();
+        packFile.delete();
+    }
+
+    /** Write a new pack in DIR holding the objects with IDS, read from
+     *  STORE, and return it.  An object X is stored as a delta against
+     *  BASES.get(X) if that is also in IDS and the delta is less than half
+     *  the size of X, unless that would create a cycle or a chain of more
+     *  than MAX_DEPTH deltas.  Entries are written in the order that the
+     *  index does not depend on, with each object's base before it, so
+     *  that the depth of the chain below a base is settled before anything
+     *  is stored against it. */
+    static Pack write(File dir, ObjectStore store, List<String> ids, Map<String, String> bases) {
+        List<String> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+        HashMap<String, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < sorted.size(); i += 1) {
+            ordinals.put(sorted.get(i), i);
+        }
+        String name = "pack-" + Utils.sha1(String.join("", sorted));
+        File packFile = new File(dir, name + ".pack");
+        Pack result = new Pack(new File(dir, name + ".idx"));
+
+        long[] offsets = new long[sorted.size()];
+        // the number of deltas through which each object written is reached
+        HashMap<String, Integer> depths = new HashMap<>();
+        Deflater deflater = new Deflater();
+        try {
+            File temp = File.createTempFile(".pack-", Utils.TEMP_SUFFIX, dir);
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+                long offset = HEADER_SIZE;
+                out.write(ByteBuffer.allocate(HEADER_SIZE).putInt(PACK_MAGIC).putInt(VERSION).array());
+                for (String first : sorted) {
+                    // the objects from FIRST down its chain of bases that are
+                    // yet to be written, stopping short of a cycle
+                    List<String> path = new ArrayList<>();
+                    Set<String> onPath = new HashSet<>();
+                    for (String id = first; id != null && ordinals.containsKey(id)
+                             && !depths.containsKey(id) && onPath.add(id); id = bases.get(id)) {
+                        path.add(id);
+                    }
+                    for (int k = path.size() - 1; k >= 0; k -= 1) {
+                        String id = path.get(k);
+                        byte[] contents = store.get(id);
+                        String base = bases.get(id);
+                        byte[] data = contents;
+                        Integer baseDepth = base == null ? null : depths.get(base);
+                        if (baseDepth != null && baseDepth < MAX_DEPTH) {
+                            byte[] delta = Delta.create(store.get(base), contents);
+                            if (delta.length < contents.length / 2) {
+                                data = delta;
+                            }
+                        }
+                        depths.put(id, data == contents ? 0 : baseDepth + 1);
+                        byte[] stored = deflate(deflater, data);
+                        BinaryOutput entry = new BinaryOutput();
+                        entry.writeByte(data == contents ? FULL : DELTA);
+                        entry.writeVarint(contents.length);
+                        if (data != contents) {
+                            entry.writeHash(base);
+                        }
+                        entry.writeVarint(data.length);
+                        entry.writeVarint(stored.length);
+                        byte[] header = entry.toByteArray();
+                        out.write(header);
+                        out.write(stored);
+                        offsets[ordinals.get(id)] = offset;
+                        offset += header.length + stored.length;
+                    }
+                }
+            }
+            Files.move(temp.toPath(), packFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            deflater.end();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(IDS_START);
+        header.putInt(INDEX_MAGIC).putInt(VERSION);
+        byte[] raw = new byte[sorted.size() * Utils.UID_BYTES];
+        int[] counts = new int[256];
+        for (int i = 0; i < sorted.size(); i += 1) {
+            Utils.fromHex(sorted.get(i), raw, i * Utils.UID_BYTES);
+            counts[raw[i * Utils.UID_BYTES] & 0xFF] += 1;
+        }
+        int total = 0;
+        for (int b = 0; b < 256; b += 1) {
+            total += counts[b];
+            header.putInt(total);
+        }
+        ByteBuffer offsetTable = ByteBuffer.allocate(8 * offsets.length);
+        for (long offset : offsets) {
+            offsetTable.putLong(offset);
+        }
+        Utils.writeContentsAtomically(result.indexFile, header.array(), raw, offsetTable.array());
+        return result;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] data) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        BinaryOutput out = new BinaryOutput();
+        byte[] buffer = new byte[1 << 16];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.writeBytes(n == buffer.length ? buffer : Arrays.copyOf(buffer, n));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] stored, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            byte[] data = new byte[length];
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                int k = inflater.inflate(data, n, length - n);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += k;
+            }
+            if (n != length) {
+                throw new IllegalArgumentException("truncated pack entry");
+            }
+            return data;
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Return a reader over the header of the entry at OFFSET. */
+    private BinaryInput entryHeader(long offset) {
+        byte[] header = new byte[(int) Math.min(MAX_ENTRY_HEADER, pack.capacity() - offset)];
+        pack.get((int) offset, header);
+        return new BinaryInput(header);
+    }
+
+    /** Return the offset of the entry for HASHVALUE, which must be in this
+     *  pack. */
+    private long offset(String hashValue) {
+        int i = find(hashValue);
+        if (i < 0) {
+            throw new IllegalArgumentException("object " + hashValue + " is not in " + packFile.getName());
+        }
+        return index.getLong(IDS_START + count * Utils.UID_BYTES + 8 * i);
+    }
+
+    /** Return the position of HASHVALUE in the index, or -1 if absent. */
+    private int find(String hashValue) {
+        load();
+        byte[] key = new byte[Utils.UID_BYTES];
+        Utils.fromHex(hashValue, key, 0);
+        int first = key[0] & 0xFF;
+        int lo = first == 0 ? 0 : index.getInt(HEADER_SIZE + 4 * (first - 1));
+        int hi = index.getInt(HEADER_SIZE + 4 * first);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(mid, key);
+            if (cmp == 0) {
+                return mid;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Compare the id at position I in the index with the raw id KEY. */
+    private int compare(int i, byte[] key) {
+        int start = IDS_START + i * Utils.UID_BYTES;
+        for (int k = 0; k < Utils.UID_BYTES; k += 1) {
+            int diff = (index.get(start + k) & 0xFF) - (key[k] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /** Map the index and pack files, if not already mapped.  Threads
+     *  hashing or writing files in parallel may be the first to call this
+     *  at once, so it is synchronized, and the index, which marks the pack
+     *  as loaded, is set last. */
+    private synchronized void load() {
+        if (index != null) {
+            return;
+        }
+        ByteBuffer indexBytes = map(indexFile);
+        ByteBuffer packBytes = map(packFile);
+        if (indexBytes.capacity() < IDS_START || indexBytes.getInt(0) != INDEX_MAGIC
+                || indexBytes.getInt(4) != VERSION || packBytes.capacity() < HEADER_SIZE
+                || packBytes.getInt(0) != PACK_MAGIC || packBytes.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("unrecognized pack " + packFile.getName());
+        }
+        count = indexBytes.getInt(IDS_START - 4);
+        pack = packBytes;
+        index = indexBytes;
+    }
+
+    private static ByteBuffer map(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
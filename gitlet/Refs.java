@@ -0,0 +1,26 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+/** Reading and writing references: small files that hold nothing but the
+ *  id of the commit they point to.
+ */
+public class Refs {
+
+    /** Return the commit id stored in REF. */
+    public static String read(File ref) {
+        return Utils.readContentsAsString(ref).trim();
+    }
+
+    /** Point REF at the commit with ID.  The new contents are renamed into
+     *  place, so readers never see a partially written reference. */
+    public static void write(File ref, String id) {
+        Utils.writeContentsAtomically(ref, id);
+    }
+
+    /** Point REF at the commit with ID when JOURNAL is committed. */
+    public static void write(File ref, String id, Journal journal) {
+        journal.write(ref, id.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,761 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/** A Gitlet repository: a working directory and the .gitlet directory
+ *  within it.  Any number of repositories may be open at once, each on its
+ *  own root; Main is the command-line interface to the one in the current
+ *  directory.  File names passed to its methods are relative to the root.
+ *  Failures throw a GitletException whose message describes the problem.
+ *  A repository is not safe for use by several threads at once; processes
+ *  sharing one should each hold its lock around every operation, as Main
+ *  does.
+ */
+public class Repository {
+
+    /** Files in the working directory that gitlet never tracks or removes. */
+    static final Set<String> IGNORED_FILES = Set.of(".gitignore", "proj2.iml");
+    /** Estimated bytes of commits kept in memory once read. */
+    private static final long COMMIT_CACHE_BYTES = 16 << 20;
+    /** Bytes of file contents kept in memory once read, and the largest
+     *  contents that are kept. */
+    private static final long BLOB_CACHE_BYTES = 32 << 20;
+    private static final int MAX_CACHED_BLOB = 4 << 20;
+
+    /** The outcome of a merge. */
+    public enum MergeResult {
+        /** The current branch was an ancestor of the given one and now
+         *  points to it. */
+        FAST_FORWARD,
+        /** A merge commit was made. */
+        MERGED,
+        /** A merge commit was made, with conflicts in some files. */
+        CONFLICT
+    }
+
+    /** The state of the index and working directory, as shown by status. */
+    public static class Status {
+        private final List<String> branches;
+        private final String currentBranch;
+        private final List<String> staged;
+        private final List<String> removed;
+        private final SortedMap<String, String> unstaged;
+        private final List<String> untracked;
+
+        Status(List<String> branches, String currentBranch, List<String> staged, List<String> removed,
+               SortedMap<String, String> unstaged, List<String> untracked) {
+            this.branches = branches;
+            this.currentBranch = currentBranch;
+            this.staged = staged;
+            this.removed = removed;
+            this.unstaged = unstaged;
+            this.untracked = untracked;
+        }
+
+        public List<String> getBranches() {
+            return branches;
+        }
+
+        public String getCurrentBranch() {
+            return currentBranch;
+        }
+
+        public List<String> getStaged() {
+            return staged;
+        }
+
+        public List<String> getRemoved() {
+            return removed;
+        }
+
+        /** Return the tracked files whose working copies differ from the
+         *  index, each mapped to "modified" or "deleted". */
+        public SortedMap<String, String> getUnstaged() {
+            return unstaged;
+        }
+
+        public List<String> getUntracked() {
+            return untracked;
+        }
+    }
+
+    /** The numbers of commits and objects removed by gc. */
+    public static class GcResult {
+        private final int commits;
+        private final int objects;
+
+        GcResult(int commits, int objects) {
+            this.commits = commits;
+            this.objects = objects;
+        }
+
+        public int getCommits() {
+            return commits;
+        }
+
+        public int getObjects() {
+            return objects;
+        }
+    }
+
+    final File root;
+    final File gitletFolder;
+    final File commits;
+    final File infoFolder;
+    final File head;
+    final File branches;
+    final File currentBranch;
+    final File journalFile;
+    final File lockFile;
+    final Config config;
+    final ObjectStore objects;
+    final CommitStore commitStore;
+    final CommitGraph graph;
+    final CommitIndex commitIndex;
+    final Index index;
+    private final LruCache<String, byte[]> blobCache = new LruCache<>(BLOB_CACHE_BYTES, contents -> contents.length);
+
+    /** The repository whose working directory is ROOT, which need not have
+     *  been initialized yet. */
+    public Repository(File root) {
+        this.root = root;
+        gitletFolder = new File(root, ".gitlet");
+        commits = new File(gitletFolder, "commits/commits");
+        infoFolder = new File(gitletFolder, "info");
+        head = new File(infoFolder, "head");
+        branches = new File(infoFolder, "branches");
+        currentBranch = new File(infoFolder, "current-branch");
+        journalFile = new File(gitletFolder, "journal");
+        lockFile = new File(gitletFolder, "lock");
+        config = new Config(new File(gitletFolder, "config"));
+        objects = new ObjectStore(new File(gitletFolder, "objects"), config);
+        commitStore = new CommitStore(commits, objects, COMMIT_CACHE_BYTES);
+        graph = new CommitGraph(new File(infoFolder, "commit-graph"), new File(infoFolder, "commit-messages"),
+                                new File(infoFolder, "message-index"), new File(infoFolder, "token-index"),
+                                commitStore);
+        commitIndex = new CommitIndex(new File(infoFolder, "commit-index"), commits);
+        index = new Index(new File(gitletFolder, "index"));
+    }
+
+    /** True iff the repository has been initialized. */
+    public boolean exists() {
+        return gitletFolder.isDirectory();
+    }
+
+    /** Create the repository, with an initial commit on branch master. */
+    public void init() {
+        if (exists()) {
+            throw Utils.error("A Gitlet version-control system already exists in the current directory.");
+        }
+        gitletFolder.mkdir();
+        commits.getParentFile().mkdir();
+        infoFolder.mkdir();
+        objects.init();
+        commits.mkdir();
+        branches.mkdir();
+
+        Commit init = Commit.Initial(new Tree().write(objects));
+        init.setHashValue(Utils.sha1(init.encode()));
+        long storeStamp = commitStore.stamp();
+        commitStore.put(init);
+        graph.add(init, storeStamp);
+        commitIndex.rebuild();
+
+        Refs.write(head, init.getHashValue());
+        Refs.write(branchFile("master"), init.getHashValue());
+        Utils.writeContents(currentBranch, "master");
+        index.save();
+    }
+
+    /** Discard whatever the repository's stores hold in memory that no
+     *  longer matches the files behind it, as when another process has
+     *  changed them since they were read. */
+    public void revalidate() {
+        config.revalidate();
+        objects.revalidate();
+        graph.revalidate();
+        commitIndex.revalidate();
+        index.revalidate();
+    }
+
+    /** Return the commit HEAD points to. */
+    public Commit head() {
+        return commitStore.get(Refs.read(head));
+    }
+
+    /** Return the name of the current branch. */
+    public String currentBranch() {
+        return Utils.readContentsAsString(currentBranch);
+    }
+
+    /** Return the names of all branches, in order. */
+    public List<String> branches() {
+        List<String> result = new ArrayList<>();
+        for (String name : Utils.plainFilenamesIn(branches)) {
+            // a ref being written, or left half written by a process that died
+            if (!Utils.isTempFile(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /** Return the contents of the file whose hash is HASHVALUE.  The result
+     *  is shared and must not be modified. */
+    public byte[] getBlob(String hashValue) {
+        byte[] contents = blobCache.get(hashValue);
+        if (contents == null) {
+            contents = objects.get(hashValue);
+            if (contents.length <= MAX_CACHED_BLOB) {
+                blobCache.put(hashValue, contents);
+            }
+        }
+        return contents;
+    }
+
+    /** Return the cache of commits read, for its statistics. */
+    public LruCache<String, Commit> getCommitCache() {
+        return commitStore.getCache();
+    }
+
+    /** Return the cache of file contents read, for its statistics. */
+    public LruCache<String, byte[]> getBlobCache() {
+        return blobCache;
+    }
+
+    /** Return the working directory, walked and hashed with the number of
+     *  threads given by the core.threads setting. */
+    private WorkingTree workingTree() {
+        int threads = config.getInt("core.threads", Runtime.getRuntime().availableProcessors());
+        return new WorkingTree(root, IGNORED_FILES, threads);
+    }
+
+    /** Return the file holding the head of the branch NAME. */
+    private File branchFile(String name) {
+        return new File(branches, name);
+    }
+
+    /** Stage the file FILENAME, or every file below the directory FILENAME. */
+    public void add(String fileName) {
+        fileName = WorkingTree.normalize(fileName);
+        WorkingTree workingTree = workingTree();
+        if (!workingTree.file(fileName).exists()) {
+            throw Utils.error("File does not exist.");
+        }
+
+        List<String> paths = workingTree.list(fileName);
+        String[] hashValues = workingTree.hash(paths, index, objects);
+        Commit headCommit = head();
+        if (paths.size() > 1) {
+            // read HEAD's trees once rather than once per file
+            headCommit.getBlobs();
+        }
+        for (int i = 0; i < paths.size(); i += 1) {
+            String path = paths.get(i);
+            index.put(path, hashValues[i], workingTree.file(path), !headCommit.contains(path, hashValues[i]));
+        }
+        index.save();
+    }
+
+    /** Commit the staged changes with MESSAGE and return the new commit's
+     *  id. */
+    public String commit(String message) {
+        return commit(message, null);
+    }
+
+    /** Make a commit of the staged changes with MESSAGE and, unless it is
+     *  null, the merge parent MERGEPARENT, and return its id.  The commit is
+     *  a transaction: if the process dies part way, the commit is either
+     *  completed or absent once the repository is next recovered. */
+    private String commit(String message, String mergeParent) {
+        recover();
+        if (!index.hasStagedChanges()) {
+            throw Utils.error("No changes added to the commit.");
+        }
+        Journal journal = new Journal(journalFile, gitletFolder, objects);
+        Map<String, Blob> changes = new HashMap<>();
+        for (String fileName : index.stagedFiles()) {
+            String hashValue = index.get(fileName).getHashValue();
+            changes.put(fileName, new Blob(hashValue));
+            if (objects.file(hashValue).isFile()) {
+                // stored by add, but not yet forced to disk
+                journal.logStored(hashValue);
+            }
+        }
+        for (String fileName : index.removedFiles()) {
+            changes.put(fileName, null);
+        }
+
+        Commit headCommit = head();
+        String tree;
+        objects.setJournal(journal);
+        try {
+            tree = Tree.update(objects, headCommit.getTree(), changes);
+        } finally {
+            objects.setJournal(null);
+        }
+        Commit c = new Commit(message, tree, headCommit.getHashValue());
+        if (mergeParent != null) {
+            c.setMergeParent(mergeParent);
+        }
+
+        c.setHashValue(Utils.sha1(c.encode()));
+        long storeStamp = commitStore.stamp();
+        commitStore.put(c, journal);
+        Refs.write(head, c.getHashValue(), journal);
+        Refs.write(branchFile(currentBranch()), c.getHashValue(), journal);
+        index.clearStaged();
+        index.save(journal);
+        journal.commit();
+        graph.add(c, storeStamp);
+        commitIndex.add(c.getHashValue());
+        journal.applied();
+        return c.getHashValue();
+    }
+
+    /** Return a lock on the repository, shared with other readers unless
+     *  EXCLUSIVE, waiting for other processes to release theirs for up to
+     *  the core.lockTimeoutMillis setting (ten seconds by default).  An
+     *  exclusive holder should recover the repository.  While the lock is
+     *  shared, rebuilding the commit graph, which readers map, throws
+     *  RepositoryLock.ExclusiveNeeded; the derived files that shared
+     *  holders may write are written whole and atomically, and any two of
+     *  them write the same contents. */
+    public RepositoryLock lock(boolean exclusive) {
+        RepositoryLock lock = RepositoryLock.acquire(lockFile, exclusive, config.getInt("core.lockTimeoutMillis", 10000));
+        if (exclusive) {
+            List<File> dirs = new ArrayList<>(List.of(gitletFolder, infoFolder, branches));
+            dirs.addAll(objects.tempDirectories());
+            if (needsRecovery()) {
+                // commit files are written only by a commit, which a process
+                // that died mid-way leaves to be recovered
+                dirs.add(commits);
+            }
+            lock.removeStaleFiles(dirs);
+        }
+        graph.setShared(!exclusive);
+        return lock;
+    }
+
+    /** True iff a commit was left unfinished by a process that died, so
+     *  that the repository must be recovered before it is read. */
+    public boolean needsRecovery() {
+        return Journal.unapplied(journalFile);
+    }
+
+    /** Complete or discard a commit left unfinished by a process that
+     *  died, make the last commit durable, and bring a repository written
+     *  by an older version up to date.  This should be called, holding an
+     *  exclusive lock, before changing the repository. */
+    public void recover() {
+        // older versions kept a ref to the most recent commit, rewritten by
+        // every commit; the commit graph now lists every commit instead
+        new File(infoFolder, "initial").delete();
+        if (Journal.recover(journalFile, gitletFolder, objects)) {
+            commitIndex.rebuild();
+            graph.rebuild();
+            index.revalidate();
+        }
+    }
+
+    /** Return the commits from HEAD back along first parents to the
+     *  initial commit. */
+    public List<CommitGraph.Entry> log() {
+        List<CommitGraph.Entry> result = new ArrayList<>();
+        String id = Refs.read(head);
+        while (id != null) {
+            CommitGraph.Entry current = graph.get(id);
+            result.add(current);
+            id = current.getParent();
+        }
+        return result;
+    }
+
+    /** Return the ids of the branch heads and HEAD, from which every commit
+     *  still in use is reachable. */
+    private List<String> historyTips() {
+        List<String> tips = new ArrayList<>();
+        for (String name : branches()) {
+            tips.add(Refs.read(new File(branches, name)));
+        }
+        tips.add(Refs.read(head));
+        return tips;
+    }
+
+    /** Apply ACTION to every commit ever made and not since removed by gc,
+     *  each once, reading them from the commit graph in the reverse of the
+     *  order they were added, so that recent commits generally come
+     *  first. */
+    public void globalLog(Consumer<CommitGraph.Entry> action) {
+        graph.forEach(action);
+    }
+
+    /** Return the ids of the files in the commit store that cannot be read
+     *  as commits, which globalLog, find and search pass over. */
+    public List<String> unreadableCommits() {
+        return graph.unreadable();
+    }
+
+    /** Return the ids of the commits whose message is MESSAGE. */
+    public List<String> find(String message) {
+        return graph.find(message);
+    }
+
+    /** Return the ids of the commits whose messages contain every word of
+     *  QUERY, ignoring case and punctuation; a word ending in '*' matches
+     *  any word it begins. */
+    public List<String> search(String query) {
+        return graph.search(query);
+    }
+
+    /** Move all objects into a single pack, storing each version of a file
+     *  that was replaced in some commit as a delta against the version
+     *  that replaced it, and return the number of objects packed. */
+    public int repack() {
+        Map<String, String> bases = new HashMap<>();
+        Set<String> seen = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>(historyTips());
+        while (!pending.isEmpty()) {
+            String id = pending.pop();
+            if (!seen.add(id)) {
+                continue;
+            }
+            Commit c = commitStore.get(id);
+            for (String parentId : new String[] {c.getParent(), c.getMergeParent()}) {
+                if (parentId == null) {
+                    continue;
+                }
+                pending.push(parentId);
+                Commit parent = commitStore.get(parentId);
+                Set<String> changed = new TreeSet<>();
+                Tree.diff(objects, parent.getTree(), c.getTree(), "", changed);
+                for (String fileName : changed) {
+                    Blob older = parent.getBlob(fileName);
+                    Blob newer = c.getBlob(fileName);
+                    if (older != null && newer != null) {
+                        bases.putIfAbsent(older.getHashValue(), newer.getHashValue());
+                    }
+                }
+            }
+        }
+        return objects.repack(bases);
+    }
+
+    /** Delete the commits not reachable from a branch or HEAD, and the
+     *  objects not reachable from those commits or the index.  Anything
+     *  written within the last gc.graceSeconds seconds (two weeks by
+     *  default) is kept, so that a command running at the same time cannot
+     *  have its new commits or objects removed. */
+    public GcResult gc() {
+        long cutoff = System.currentTimeMillis() - 1000L * config.getInt("gc.graceSeconds", 14 * 24 * 60 * 60);
+        String[] commitIds = commitStore.ids().toArray(new String[0]);
+        String[] objectIds = objects.ids().toArray(new String[0]);
+        BitSet reachableCommits = new BitSet(commitIds.length);
+        BitSet reachableObjects = new BitSet(objectIds.length);
+        Predicate<String> markObject = id -> {
+            int i = Arrays.binarySearch(objectIds, id);
+            if (i < 0 || reachableObjects.get(i)) {
+                return false;
+            }
+            reachableObjects.set(i);
+            return true;
+        };
+
+        Deque<String> pending = new ArrayDeque<>(historyTips());
+        while (!pending.isEmpty()) {
+            String id = pending.pop();
+            int i = Arrays.binarySearch(commitIds, id);
+            if (i < 0 || reachableCommits.get(i)) {
+                continue;
+            }
+            reachableCommits.set(i);
+            Commit c = commitStore.get(id);
+            Tree.walk(objects, c.getTree(), markObject);
+            if (c.getParent() != null) {
+                pending.push(c.getParent());
+            }
+            if (c.getMergeParent() != null) {
+                pending.push(c.getMergeParent());
+            }
+        }
+        for (Index.Entry entry : index.entries().values()) {
+            markObject.test(entry.getHashValue());
+        }
+
+        int removedCommits = 0;
+        for (int i = reachableCommits.nextClearBit(0); i < commitIds.length; i = reachableCommits.nextClearBit(i + 1)) {
+            if (commitStore.file(commitIds[i]).lastModified() < cutoff) {
+                commitStore.delete(commitIds[i]);
+                removedCommits += 1;
+            }
+        }
+        int removedObjects = objects.prune(id -> {
+            int i = Arrays.binarySearch(objectIds, id);
+            return i < 0 || reachableObjects.get(i);
+        }, cutoff);
+        if (removedCommits > 0) {
+            commitIndex.rebuild();
+            graph.rebuild();
+        }
+        blobCache.clear();
+        return new GcResult(removedCommits, removedObjects);
+    }
+
+    /** Unstage FILENAME and, if HEAD tracks it, stage its removal and
+     *  delete it. */
+    public void rm(String fileName) {
+        fileName = WorkingTree.normalize(fileName);
+        Index.Entry entry = index.get(fileName);
+        boolean staged = entry != null && entry.isStaged();
+        boolean tracked = head().getBlob(fileName) != null;
+        if (!staged && !tracked) {
+            throw Utils.error("No reason to remove the file.");
+        }
+        index.remove(fileName, tracked);
+        if (tracked) {
+            workingTree().file(fileName).delete();
+        }
+        index.save();
+    }
+
+    /** Return the state of the index and working directory. */
+    public Status status() {
+        List<String> staged = new ArrayList<>(index.stagedFiles());
+        List<String> removed = new ArrayList<>(index.removedFiles());
+        WorkingTree workingTree = workingTree();
+        List<String> present = new ArrayList<>();
+        for (String fileName : index.entries().keySet()) {
+            if (workingTree.file(fileName).isFile()) {
+                present.add(fileName);
+            }
+        }
+        String[] hashValues = workingTree.hash(present, index, null);
+        SortedMap<String, String> unstaged = new TreeMap<>();
+        List<String> unmodified = new ArrayList<>();
+        int next = 0;
+        for (Map.Entry<String, Index.Entry> entry : index.entries().entrySet()) {
+            String fileName = entry.getKey();
+            if (next == present.size() || !present.get(next).equals(fileName)) {
+                unstaged.put(fileName, "deleted");
+            } else if (!hashValues[next++].equals(entry.getValue().getHashValue())) {
+                unstaged.put(fileName, "modified");
+            } else {
+                unmodified.add(fileName);
+            }
+        }
+        List<String> untracked = new ArrayList<>();
+        for (String fileName : workingTree.list("")) {
+            if (index.get(fileName) == null) {
+                untracked.add(fileName);
+            }
+        }
+        for (String fileName : unmodified) {
+            index.refresh(fileName, workingTree.file(fileName));
+        }
+        index.save();
+        return new Status(branches(), currentBranch(), staged, removed, unstaged, untracked);
+    }
+
+    /** Create a branch named NAME pointing to HEAD. */
+    public void branch(String name) {
+        File branch = branchFile(name);
+        if (branch.exists()) {
+            throw Utils.error("A branch with that name already exists.");
+        }
+        Refs.write(branch, Refs.read(head));
+    }
+
+    /** Write FILENAME's contents in the commit whose id is, or begins with,
+     *  ID, or in HEAD if ID is null, to the working directory. */
+    public void checkout(String id, String fileName) {
+        fileName = WorkingTree.normalize(fileName);
+        Commit c = id == null ? head() : findCommit(id);
+        Blob blob = c.getBlob(fileName);
+        if (blob == null) {
+            throw Utils.error("File does not exist in that commit.");
+        }
+        workingTree().write(fileName, blob, index, objects);
+    }
+
+    private String abbrevCommitHelper(String id) {
+        List<String> matches = commitIndex.find(id, 2);
+        if (matches.size() > 1) {
+            throw Utils.error("Ambiguous commit id.");
+        }
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    /** Return the commit whose id is ID or begins with ID, throwing an
+     *  error if there is none. */
+    public Commit findCommit(String id) {
+        String fullId = null;
+        if (id.length() == Utils.UID_LENGTH) {
+            fullId = id;
+        } else if (id.length() < Utils.UID_LENGTH) {
+            fullId = abbrevCommitHelper(id);
+        }
+        if (fullId == null || !commitStore.contains(fullId)) {
+            throw Utils.error("No commit with that id exists.");
+        }
+        return commitStore.get(fullId);
+    }
+
+    private void checkUntrackedFiles(Commit curr, Commit given) {
+        for (Map.Entry<String, Blob> blob : given.getBlobs().entrySet()) {
+            String fileName = blob.getKey();
+            String hashValue = blob.getValue().getHashValue();
+            File headFile = new File(root, fileName);
+            if (headFile.exists() && ((curr.getBlobs().containsKey(fileName) && !curr.contains(fileName, hashValue) && !curr.contains(fileName, Utils.sha1(headFile)))
+                    || !curr.getBlobs().containsKey(fileName))) {
+                throw Utils.error("There is an untracked file in the way; delete it, or add and commit it first.");
+            }
+        }
+    }
+
+    /** Check out the head of branch BRANCHNAME and make it current. */
+    public void checkoutBranch(String branchName) {
+        File branch = branchFile(branchName);
+        if (!branch.exists()) {
+            throw Utils.error("No such branch exists.");
+        }
+        changeCommitHelper(commitStore.get(Refs.read(branch)));
+        Utils.writeContents(currentBranch, branchName);
+    }
+
+    /** Delete the branch BRANCHNAME, but none of its commits. */
+    public void rmBranch(String branchName) {
+        File branch = branchFile(branchName);
+        if (!branch.exists()) {
+            throw Utils.error("A branch with that name does not exist.");
+        }
+        if (branchName.equals(currentBranch())) {
+            throw Utils.error("Cannot remove the current branch");
+        }
+        branch.delete();
+    }
+
+    private void changeCommitHelper(Commit c) {
+        if (!workingTree().checkout(head(), c, index, objects)) {
+            throw Utils.error("There is an untracked file in the way; delete it, or add and commit it first.");
+        }
+        Refs.write(head, c.getHashValue());
+        index.reset(c.getBlobs(), root);
+        index.save();
+    }
+
+    /** Check out the commit whose id is, or begins with, ID and point the
+     *  current branch to it. */
+    public void reset(String id) {
+        Commit c = findCommit(id);
+        changeCommitHelper(c);
+        Refs.write(branchFile(currentBranch()), c.getHashValue());
+    }
+
+    /** Merge the branch BRANCHNAME into the current branch. */
+    public MergeResult merge(String branchName) {
+        File mergeBranch = branchFile(branchName);
+        if (!mergeBranch.exists()) {
+            throw Utils.error("A branch with that name does not exist.");
+        }
+        if (index.hasStagedChanges()) {
+            throw Utils.error("You have uncommitted changes.");
+        }
+        if (branchName.equals(currentBranch())) {
+            throw Utils.error("Cannot merge branch with itself");
+        }
+        Commit merge = commitStore.get(Refs.read(mergeBranch));
+        Commit curr = commitStore.get(Refs.read(branchFile(currentBranch())));
+        Commit splitPoint = commitStore.get(graph.mergeBase(curr.getHashValue(), merge.getHashValue()));
+        checkUntrackedFiles(head(), merge);
+        if (splitPoint.getHashValue().equals(merge.getHashValue())) {
+            throw Utils.error("Given branch is an ancestor of the current branch.");
+        }
+        if (splitPoint.getHashValue().equals(curr.getHashValue())) {
+            checkoutBranch(branchName);
+            return MergeResult.FAST_FORWARD;
+        }
+        boolean conflict = mergeConflictHelper(splitPoint, curr, merge);
+        String message = "Merged " + branchName + " into " + currentBranch() + ".";
+        commit(message, merge.getHashValue());
+        Refs.write(mergeBranch, Refs.read(head));
+        return conflict ? MergeResult.CONFLICT : MergeResult.MERGED;
+    }
+
+    /** Write to FILENAME the merge of its versions SPLIT, CURR and GIVEN
+     *  in the split point and the current and given branches, any of which
+     *  may be null if the file is absent there, and return true iff it has
+     *  conflicts.  A file deleted on one side conflicts as a whole. */
+    private boolean mergeFile(String fileName, Blob split, Blob curr, Blob given) {
+        byte[] splitContents = split == null ? new byte[0] : getBlob(split.getHashValue());
+        byte[] currContents = curr == null ? new byte[0] : getBlob(curr.getHashValue());
+        byte[] givenContents = given == null ? new byte[0] : getBlob(given.getHashValue());
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(root, fileName)))) {
+            if (curr == null || given == null) {
+                Diff3.conflict(currContents, givenContents, out);
+                return true;
+            }
+            return Diff3.merge(splitContents, currContents, givenContents, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    private boolean mergeConflictHelper(Commit splitPoint, Commit curr, Commit given) {
+        boolean mergeConflict = false;
+        // only files changed in the given branch since the split point can need merging
+        Set<String> changed = new TreeSet<>();
+        Tree.diff(objects, splitPoint.getTree(), given.getTree(), "", changed);
+        for (String fileName : changed) {
+            Blob splitBlob = splitPoint.getBlob(fileName);
+            Blob currBlob = curr.getBlob(fileName);
+            Blob givenBlob = given.getBlob(fileName);
+            if (givenBlob != null) {
+                String hashValue = givenBlob.getHashValue();
+                // merge conflict; contents are different
+                // present and different in all 3
+                if (splitBlob != null && currBlob != null && !curr.contains(fileName, hashValue) && !splitPoint.contains(fileName, currBlob.getHashValue())
+                        // present at split, different at given, absent at curr
+                        || splitBlob != null && currBlob == null
+                        // absent at split and different at given and curr
+                        || splitBlob == null && currBlob != null && !curr.contains(fileName, hashValue)) {
+                    mergeConflict |= mergeFile(fileName, splitBlob, currBlob, givenBlob);
+                    add(fileName);
+                } else if (splitBlob != null ? curr.contains(fileName, splitBlob.getHashValue()) : currBlob == null) {
+                    // modified in given branch but same in curr, or present only in given branch
+                    workingTree().write(fileName, givenBlob, index, objects);
+                    add(fileName);
+                }
+            } else if (currBlob != null) {
+                // unmodified in current branch and absent in given branch
+                if (splitPoint.contains(fileName, currBlob.getHashValue())) {
+                    rm(fileName);
+                    new File(root, fileName).delete();
+                // present at split, absent at given, different at curr
+                } else if (splitBlob != null) {
+                    mergeConflict |= mergeFile(fileName, splitBlob, currBlob, null);
+                    add(fileName);
+                }
+            }
+        }
+        return mergeConflict;
+    }
+}
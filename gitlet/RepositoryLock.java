@@ -0,0 +1,139 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** A lock on a repository, held by a process for the length of a command:
+ *  shared by any number of commands that only read the repository, or
+ *  exclusive for one that changes it.  It is an operating-system lock on
+ *  the lock file, so it is released whenever its process ends, however
+ *  it ends, and a lock can never be left behind by a process that died.
+ *  What such a process can leave behind is the temporary files of writes
+ *  it never finished, which the next exclusive holder removes.  The
+ *  exclusive holder records its process id in the lock file, to be named
+ *  to anyone who gives up waiting for it.
+ */
+public class RepositoryLock implements AutoCloseable {
+
+    /** Thrown by a command holding a shared lock that must rewrite files
+     *  that other readers may be reading, to be run again holding an
+     *  exclusive lock. */
+    static class ExclusiveNeeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /** Milliseconds between attempts to take a lock that is held. */
+    private static final long RETRY_MILLIS = 10;
+    private static final long MAX_RETRY_MILLIS = 200;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private RepositoryLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /** Return a lock on FILE, shared unless EXCLUSIVE, waiting up to
+     *  TIMEOUTMILLIS milliseconds for other processes to release theirs. */
+    static RepositoryLock acquire(File file, boolean exclusive, long timeoutMillis) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            long wait = RETRY_MILLIS;
+            while (true) {
+                FileLock lock;
+                try {
+                    lock = channel.tryLock(0, Long.MAX_VALUE, !exclusive);
+                } catch (OverlappingFileLockException excp) {
+                    // held by another Repository in this process
+                    lock = null;
+                }
+                if (lock != null) {
+                    if (exclusive) {
+                        channel.truncate(0);
+                        channel.write(ByteBuffer.wrap(Long.toString(ProcessHandle.current().pid())
+                                                      .getBytes(StandardCharsets.UTF_8)), 0);
+                    }
+                    RepositoryLock result = new RepositoryLock(channel, lock);
+                    channel = null;
+                    return result;
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    throw Utils.error("Unable to lock the repository: %s.", holder(channel));
+                }
+                Thread.sleep(wait);
+                wait = Math.min(2 * wait, MAX_RETRY_MILLIS);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Interrupted while waiting for the repository lock.");
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException excp) {
+                    // nothing was locked
+                }
+            }
+        }
+    }
+
+    /** Return a description of the process holding the lock on CHANNEL:
+     *  the one whose id is recorded, if it is still running, since that
+     *  can only be an exclusive holder. */
+    private static String holder(FileChannel channel) throws IOException {
+        ByteBuffer contents = ByteBuffer.allocate(20);
+        channel.read(contents, 0);
+        String recorded = new String(contents.array(), 0, contents.position(), StandardCharsets.UTF_8).trim();
+        try {
+            long pid = Long.parseLong(recorded);
+            if (ProcessHandle.of(pid).isPresent()) {
+                return "it is held by process " + pid;
+            }
+        } catch (NumberFormatException excp) {
+            // no exclusive holder is recorded
+        }
+        return "it is held by other processes";
+    }
+
+    /** Remove the temporary files left in the directories DIRS by writes
+     *  that never finished.  Only the exclusive holder may call this, when
+     *  no other writes can be in progress. */
+    void removeStaleFiles(List<File> dirs) {
+        for (File dir : dirs) {
+            File[] stale = dir.listFiles((d, name) -> Utils.isTempFile(name));
+            if (stale != null) {
+                for (File f : stale) {
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    /** Release the lock. */
+    @Override
+    public void close() {
+        try {
+            if (!lock.isShared()) {
+                channel.truncate(0);
+            }
+            lock.release();
+            channel.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/** A benchmark of finding commits by message, which may be run as
+ *      java gitlet.SearchBenchmark [COMMITS [ROUNDS]]
+ *  It builds, in a scratch repository, a history of COMMITS commits (5000
+ *  by default) whose messages name a ticket and a component, as in
+ *      Fix PROJ-1234 in the parser
+ *  and reports the average time over ROUNDS rounds (200 by default) of
+ *  find and of exact, prefix and multi-word searches, each against that of
+ *  scanning every message through globalLog, as find did before the
+ *  message and token indexes.
+ */
+public class SearchBenchmark {
+
+    private static final String[] COMPONENTS = {"parser", "index", "merge", "checkout", "status", "log"};
+
+    public static void main(String... args) throws IOException {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        Path root = Files.createTempDirectory("gitlet-bench");
+        try {
+            Repository repo = new Repository(root.toFile());
+            repo.init();
+            String tree = repo.head().getTree();
+            String parent = repo.head().getHashValue();
+            long time = System.currentTimeMillis();
+            for (int i = 0; i < commits; i += 1) {
+                String message = "Fix PROJ-" + i + " in the " + COMPONENTS[i % COMPONENTS.length];
+                Commit c = new Commit(message, tree, parent, time + i);
+                c.setHashValue(Utils.sha1(c.encode()));
+                repo.commitStore.put(c);
+                parent = c.getHashValue();
+            }
+            repo.graph.rebuild();
+
+            String message = "Fix PROJ-" + commits / 2 + " in the " + COMPONENTS[commits / 2 % COMPONENTS.length];
+            String ticket = "proj-" + commits / 2;
+            System.out.printf("%d commits, %d rounds%n", commits, rounds);
+            compare(rounds, "find \"" + message + "\"", () -> repo.find(message),
+                    () -> scan(repo, m -> m.equals(message)));
+            compare(rounds, "search " + ticket, () -> repo.search(ticket),
+                    () -> scan(repo, m -> TokenIndex.tokenize(m).contains(ticket)));
+            compare(rounds, "search proj-" + commits / 20 + "*", () -> repo.search("proj-" + commits / 20 + "*"),
+                    () -> scan(repo, m -> TokenIndex.tokenize(m).stream()
+                                           .anyMatch(t -> t.startsWith("proj-" + commits / 20))));
+            compare(rounds, "search \"fix parser\"", () -> repo.search("fix parser"),
+                    () -> scan(repo, m -> TokenIndex.tokenize(m).containsAll(List.of("fix", "parser"))));
+        } finally {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /** Check that the indexed lookup INDEXED and the scan SCANNED find the
+     *  same commits, then time each over ROUNDS rounds under the heading
+     *  NAME. */
+    private static void compare(int rounds, String name, Supplier<List<String>> indexed,
+                                Supplier<List<String>> scanned) {
+        List<String> expected = scanned.get();
+        if (!indexed.get().equals(expected)) {
+            throw new IllegalStateException(name + ": index and scan disagree");
+        }
+        System.out.printf("%s (%d matches)%n", name, expected.size());
+        MergeBaseBenchmark.time("index", rounds, indexed::get);
+        MergeBaseBenchmark.time("global-log scan", rounds, scanned::get);
+    }
+
+    /** Return the ids of the commits whose messages pass TEST, in the order
+     *  they were added, scanning every commit in REPO. */
+    private static List<String> scan(Repository repo, Predicate<String> test) {
+        List<String> result = new ArrayList<>();
+        repo.globalLog(entry -> {
+            if (test.test(entry.getMessage())) {
+                result.add(entry.getHashValue());
+            }
+        });
+        Collections.reverse(result);
+        return result;
+    }
+}
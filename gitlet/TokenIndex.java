@@ -0,0 +1,229 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/** An inverted index of the words of commit messages, for search.  The
+ *  messages are those of the records of a CommitGraph, identified by
+ *  number.  A word (token) is a maximal run of letters, digits, '-' and
+ *  '_', not beginning or ending with '-' or '_', in lower case, so that a
+ *  ticket id such as PROJ-1234 is one token.  Each token maps to its
+ *  posting list: the numbers of the records whose messages contain it, in
+ *  ascending order.  The index file holds
+ *      magic, version   varints
+ *      covered          varint number of records indexed
+ *      count            varint number of tokens
+ *      tokens           in ascending order, each a string followed by
+ *                       its posting list as a varint length and the
+ *                       varint differences between successive numbers
+ *  The index is read whole, kept in memory, and brought up to date with
+ *  the records added since it was written before it is searched.  A graph
+ *  that is rebuilt, and so may be renumbered, deletes the index, which is
+ *  then rebuilt from the graph.
+ */
+class TokenIndex {
+
+    private static final int MAGIC = 0x544b4958;
+    private static final int VERSION = 1;
+
+    /** A growable posting list. */
+    private static class Postings {
+        private int[] ordinals = new int[4];
+        private int size;
+
+        void add(int ordinal) {
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                return;
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, 2 * size);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ordinals, size);
+        }
+    }
+
+    private final File file;
+    private TreeMap<String, Postings> tokens;
+    private int covered;
+    /** The stamp of the file when read or written. */
+    private long stamp;
+
+    TokenIndex(File file) {
+        this.file = file;
+    }
+
+    /** Return the numbers of the records, of the COUNT in the graph, whose
+     *  messages contain every word of QUERY, in ascending order.  A word of
+     *  the query ending in '*' matches every token it is a prefix of.
+     *  MESSAGES gives the message of each record. */
+    int[] search(String query, int count, IntFunction<String> messages) {
+        update(count, messages);
+        int[] result = null;
+        for (String word : query.trim().split("\\s+")) {
+            boolean prefix = word.endsWith("*");
+            for (String token : tokenize(prefix ? word.substring(0, word.length() - 1) : word)) {
+                int[] matches;
+                if (prefix) {
+                    matches = new int[0];
+                    for (Postings postings : tokens.subMap(token, token + Character.MAX_VALUE).values()) {
+                        matches = union(matches, postings.toArray());
+                    }
+                } else {
+                    Postings postings = tokens.get(token);
+                    matches = postings == null ? new int[0] : postings.toArray();
+                }
+                result = result == null ? matches : intersection(result, matches);
+            }
+        }
+        return result == null ? new int[0] : result;
+    }
+
+    /** Remove the index file. */
+    void delete() {
+        file.delete();
+        tokens = null;
+    }
+
+    /** Return the tokens of TEXT, in order, with any repeats. */
+    static List<String> tokenize(String text) {
+        List<String> result = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i += 1) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c) || c == '-' || c == '_') {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                String token = text.substring(start, i).replaceAll("^[-_]+|[-_]+$", "");
+                if (!token.isEmpty()) {
+                    result.add(token.toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /** Read the index, if it has not been read or has changed, and index
+     *  the records up to COUNT not yet in it, writing it if any were
+     *  added. */
+    private void update(int count, IntFunction<String> messages) {
+        if (tokens == null || Utils.stamp(file) != stamp) {
+            read();
+        }
+        if (covered > count) {
+            tokens = new TreeMap<>();
+            covered = 0;
+        }
+        if (covered == count) {
+            return;
+        }
+        for (int i = covered; i < count; i += 1) {
+            for (String token : tokenize(messages.apply(i))) {
+                tokens.computeIfAbsent(token, k -> new Postings()).add(i);
+            }
+        }
+        covered = count;
+        write();
+    }
+
+    private void read() {
+        tokens = new TreeMap<>();
+        covered = 0;
+        stamp = Utils.stamp(file);
+        if (!file.isFile()) {
+            return;
+        }
+        try {
+            BinaryInput in = new BinaryInput(Utils.readContents(file));
+            if (in.readVarint() != MAGIC || in.readVarint() != VERSION) {
+                return;
+            }
+            int indexed = (int) in.readVarint();
+            for (long n = in.readVarint(); n > 0; n -= 1) {
+                Postings postings = new Postings();
+                tokens.put(in.readString(), postings);
+                int ordinal = 0;
+                for (long k = in.readVarint(); k > 0; k -= 1) {
+                    ordinal += (int) in.readVarint();
+                    postings.add(ordinal);
+                }
+            }
+            covered = indexed;
+        } catch (IllegalArgumentException excp) {
+            // a damaged index is rebuilt
+            tokens = new TreeMap<>();
+        }
+    }
+
+    private void write() {
+        BinaryOutput out = new BinaryOutput();
+        out.writeVarint(MAGIC);
+        out.writeVarint(VERSION);
+        out.writeVarint(covered);
+        out.writeVarint(tokens.size());
+        for (Map.Entry<String, Postings> entry : tokens.entrySet()) {
+            Postings postings = entry.getValue();
+            out.writeString(entry.getKey());
+            out.writeVarint(postings.size);
+            int previous = 0;
+            for (int i = 0; i < postings.size; i += 1) {
+                out.writeVarint(postings.ordinals[i] - previous);
+                previous = postings.ordinals[i];
+            }
+        }
+        Utils.writeContentsAtomically(file, out.toByteArray());
+        stamp = Utils.stamp(file);
+    }
+
+    /** Return the sorted union of the sorted arrays A and B. */
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j == b.length || i < a.length && a[i] < b[j]) {
+                next = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                next = b[j++];
+            } else {
+                next = a[i++];
+                j += 1;
+            }
+            result[n++] = next;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Return the sorted intersection of the sorted arrays A and B. */
+    private static int[] intersection(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i += 1;
+            } else if (b[j] < a[i]) {
+                j += 1;
+            } else {
+                result[n++] = a[i++];
+                j += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+}
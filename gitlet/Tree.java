@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/** The contents of one directory in a commit: the blobs of the files it
+ *  holds and the hashes of the trees of its subdirectories.  Trees are
+ *  stored in the object store under the hash of their binary form, so
+ *  a directory that is unchanged between two commits is shared by both and
+ *  can be recognized as unchanged from its hash alone.
+ */
+public class Tree {
+
+    /** Version of the binary format written by encode. */
+    private static final int FORMAT_VERSION = 1;
+
+    private final TreeMap<String, Blob> blobs = new TreeMap<>();
+    private final TreeMap<String, String> trees = new TreeMap<>();
+
+    public static Tree read(ObjectStore store, String hashValue) {
+        return decode(store.get(hashValue));
+    }
+
+    /** Store this tree and return its hash. */
+    public String write(ObjectStore store) {
+        return store.put(encode());
+    }
+
+    /** Return the binary form of this tree: a version byte, then the number
+     *  of files followed by the name and 20-byte blob hash of each, then the
+     *  number of subdirectories followed by the name and 20-byte tree hash of
+     *  each.  Counts and name lengths are varints; entries are sorted by
+     *  name, so equal trees have equal forms. */
+    public byte[] encode() {
+        BinaryOutput out = new BinaryOutput();
+        out.writeByte(FORMAT_VERSION);
+        out.writeVarint(blobs.size());
+        for (Map.Entry<String, Blob> entry : blobs.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeHash(entry.getValue().getHashValue());
+        }
+        out.writeVarint(trees.size());
+        for (Map.Entry<String, String> entry : trees.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeHash(entry.getValue());
+        }
+        return out.toByteArray();
+    }
+
+    public static Tree decode(byte[] bytes) {
+        BinaryInput in = new BinaryInput(bytes);
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("unknown tree format version " + version);
+        }
+        Tree tree = new Tree();
+        for (long n = in.readVarint(); n > 0; n -= 1) {
+            tree.blobs.put(in.readString(), new Blob(in.readHash()));
+        }
+        for (long n = in.readVarint(); n > 0; n -= 1) {
+            tree.trees.put(in.readString(), in.readHash());
+        }
+        return tree;
+    }
+
+    public boolean isEmpty() {
+        return blobs.isEmpty() && trees.isEmpty();
+    }
+
+    /** Return the blob at PATH in the tree with HASHVALUE, or null if there
+     *  is none.  Only the trees along PATH are read. */
+    public static Blob find(ObjectStore store, String hashValue, String path) {
+        Tree tree = read(store, hashValue);
+        int slash = path.indexOf('/');
+        while (slash >= 0) {
+            String subtree = tree.trees.get(path.substring(0, slash));
+            if (subtree == null) {
+                return null;
+            }
+            tree = read(store, subtree);
+            path = path.substring(slash + 1);
+            slash = path.indexOf('/');
+        }
+        return tree.blobs.get(path);
+    }
+
+    /** Call VISIT with HASHVALUE, the hash of a tree, and if it returns
+     *  true, with the hash of every blob the tree holds and, recursively,
+     *  of every subtree.  VISIT returning false for a subtree, as when it has
+     *  been seen before, skips it without its being read. */
+    public static void walk(ObjectStore store, String hashValue, Predicate<String> visit) {
+        if (!visit.test(hashValue)) {
+            return;
+        }
+        Tree tree = read(store, hashValue);
+        for (Blob blob : tree.blobs.values()) {
+            visit.test(blob.getHashValue());
+        }
+        for (String subtree : tree.trees.values()) {
+            walk(store, subtree, visit);
+        }
+    }
+
+    /** Add every blob in the tree with HASHVALUE to RESULT, keyed by its
+     *  path prefixed with PREFIX. */
+    public static void flatten(ObjectStore store, String hashValue, String prefix, Map<String, Blob> result) {
+        Tree tree = read(store, hashValue);
+        for (Map.Entry<String, Blob> entry : tree.blobs.entrySet()) {
+            result.put(prefix + entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, String> entry : tree.trees.entrySet()) {
+            flatten(store, entry.getValue(), prefix + entry.getKey() + "/", result);
+        }
+    }
+
+    /** Return the hash of the tree obtained from the tree with HASHVALUE by
+     *  applying CHANGES, which maps paths to their new blobs, or to null for
+     *  paths to remove.  Only the trees of directories containing a changed
+     *  path are rewritten; all others are shared with the original. */
+    public static String update(ObjectStore store, String hashValue, Map<String, Blob> changes) {
+        return update(store, hashValue, changes, true);
+    }
+
+    private static String update(ObjectStore store, String hashValue, Map<String, Blob> changes, boolean root) {
+        Tree tree = hashValue == null ? new Tree() : read(store, hashValue);
+        Map<String, Map<String, Blob>> subdirectoryChanges = new HashMap<>();
+        for (Map.Entry<String, Blob> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf('/');
+            if (slash >= 0) {
+                subdirectoryChanges.computeIfAbsent(path.substring(0, slash), k -> new HashMap<>())
+                        .put(path.substring(slash + 1), change.getValue());
+            } else if (change.getValue() == null) {
+                tree.blobs.remove(path);
+            } else {
+                tree.blobs.put(path, change.getValue());
+            }
+        }
+        for (Map.Entry<String, Map<String, Blob>> entry : subdirectoryChanges.entrySet()) {
+            String subtree = update(store, tree.trees.get(entry.getKey()), entry.getValue(), false);
+            if (subtree == null) {
+                tree.trees.remove(entry.getKey());
+            } else {
+                tree.trees.put(entry.getKey(), subtree);
+            }
+        }
+        if (!root && tree.isEmpty()) {
+            return null;
+        }
+        return tree.write(store);
+    }
+
+    /** Add to RESULT, prefixed with PREFIX, the path of every file whose blob
+     *  differs between the trees with hashes FIRST and SECOND, either of which
+     *  may be null to denote an absent directory.  Subtrees with equal hashes
+     *  are skipped without being read. */
+    public static void diff(ObjectStore store, String first, String second, String prefix, Set<String> result) {
+        if (first == null ? second == null : first.equals(second)) {
+            return;
+        }
+        Tree firstTree = first == null ? new Tree() : read(store, first);
+        Tree secondTree = second == null ? new Tree() : read(store, second);
+        Set<String> names = new TreeSet<>(firstTree.blobs.keySet());
+        names.addAll(secondTree.blobs.keySet());
+        for (String name : names) {
+            Blob firstBlob = firstTree.blobs.get(name);
+            Blob secondBlob = secondTree.blobs.get(name);
+            if (firstBlob == null || secondBlob == null || !firstBlob.getHashValue().equals(secondBlob.getHashValue())) {
+                result.add(prefix + name);
+            }
+        }
+        names = new TreeSet<>(firstTree.trees.keySet());
+        names.addAll(secondTree.trees.keySet());
+        for (String name : names) {
+            diff(store, firstTree.trees.get(name), secondTree.trees.get(name), prefix + name + "/", result);
+        }
+    }
+}
@@ -9,14 +9,19 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
+import java.util.Objects;
 
 
 /** Assorted utilities.
@@ -29,27 +34,103 @@ class Utils {
     /** The length of a complete SHA-1 UID as a hexadecimal numeral. */
     static final int UID_LENGTH = 40;
 
+    /** The suffix of the temporary files written by writeContentsAtomically
+     *  and the object store, whose names also start with a dot. */
+    static final String TEMP_SUFFIX = ".tmp";
+
+    /** True iff NAME is that of a temporary file, which is not part of the
+     *  repository until it is renamed. */
+    static boolean isTempFile(String name) {
+        return name.startsWith(".") && name.endsWith(TEMP_SUFFIX);
+    }
+
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
+        MessageDigest md = sha1Digest();
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                md.update((byte[]) val);
+            } else if (val instanceof String) {
+                md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+            } else {
+                throw new IllegalArgumentException("improper type to sha1");
+            }
+        }
+        return toHex(md.digest(), 0);
+    }
+
+    /** Files at least this long are hashed through memory-mapped buffers
+     *  rather than read. */
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    /** The largest region of a file mapped at once. */
+    private static final long MAP_CHUNK = 1 << 26;
+
+    /** Returns the SHA-1 hash of the contents of FILE, which is streamed
+     *  rather than read into memory.  Throws IllegalArgumentException in
+     *  case of problems. */
+    static String sha1(File file) {
+        MessageDigest md = sha1Digest();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                for (long pos = 0; pos < size; pos += MAP_CHUNK) {
+                    md.update(channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                                          Math.min(MAP_CHUNK, size - pos)));
+                }
+            } else {
+                ByteBuffer buffer = readBuffer();
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    md.update(buffer);
+                    buffer.clear();
                 }
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return toHex(md.digest(), 0);
+    }
+
+    /** A SHA-1 digest for each thread, reused across calls. */
+    private static final ThreadLocal<MessageDigest> SHA1_DIGEST =
+        ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException excp) {
+                throw new IllegalArgumentException("System does not support SHA-1");
             }
-            return result.toString();
-        } catch (NoSuchAlgorithmException excp) {
-            throw new IllegalArgumentException("System does not support SHA-1");
+        });
+
+    /** A buffer for streaming file contents, one for each thread. */
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(1 << 16));
+
+    /** Returns this thread's SHA-1 digest, reset and ready for use. */
+    static MessageDigest sha1Digest() {
+        MessageDigest md = SHA1_DIGEST.get();
+        md.reset();
+        return md;
+    }
+
+    /** Returns this thread's streaming buffer, cleared and ready for use. */
+    static ByteBuffer readBuffer() {
+        ByteBuffer buffer = READ_BUFFER.get();
+        buffer.clear();
+        return buffer;
+    }
+
+    /** Returns a value that changes whenever FILE is replaced or written,
+     *  as far as its modification time, length and identity can show, or 0
+     *  if it does not exist. */
+    static long stamp(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return Objects.hash(attributes.lastModifiedTime(), attributes.size(), attributes.fileKey());
+        } catch (IOException excp) {
+            return 0;
         }
     }
 
@@ -59,6 +140,33 @@ class Utils {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /** The length of a complete SHA-1 UID in raw bytes. */
+    static final int UID_BYTES = UID_LENGTH / 2;
+
+    /** Hexadecimal digits, indexed by value. */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** Returns the UID_BYTES bytes of BYTES starting at OFFSET as a
+     *  hexadecimal UID. */
+    static String toHex(byte[] bytes, int offset) {
+        char[] hex = new char[UID_LENGTH];
+        for (int i = 0; i < UID_BYTES; i += 1) {
+            int b = bytes[offset + i] & 0xFF;
+            hex[2 * i] = HEX_DIGITS[b >>> 4];
+            hex[2 * i + 1] = HEX_DIGITS[b & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /** Stores the hexadecimal UID HASHVALUE as UID_BYTES raw bytes in
+     *  BYTES, starting at OFFSET. */
+    static void fromHex(String hashValue, byte[] bytes, int offset) {
+        for (int i = 0; i < UID_BYTES; i += 1) {
+            bytes[offset + i] = (byte) (Character.digit(hashValue.charAt(2 * i), 16) << 4
+                                        | Character.digit(hashValue.charAt(2 * i + 1), 16));
+        }
+    }
+
     /* FILE DELETION */
 
     /** Deletes FILE if it exists and is not a directory.  Returns true
@@ -132,6 +240,23 @@ class Utils {
         }
     }
 
+    /** Write CONTENTS to FILE as for writeContents, but by writing them to a
+     *  temporary file, named with the suffix TEMP_SUFFIX and unique to this
+     *  write, that is then renamed over FILE, so that readers see either
+     *  the old or the new contents in full.  Throws IllegalArgumentException
+     *  in case of problems. */
+    static void writeContentsAtomically(File file, Object... contents) {
+        try {
+            File temp = File.createTempFile("." + file.getName() + "-", TEMP_SUFFIX, file.getAbsoluteFile().getParentFile());
+            writeContents(temp, contents);
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
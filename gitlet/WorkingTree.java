@@ -0,0 +1,259 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/** The working directory of a repository, walked and hashed in parallel on
+ *  a fork-join pool.  Paths are relative to the root and separated by
+ *  '/'.  Results are always returned in path order, however the work was
+ *  divided among threads.
+ */
+public class WorkingTree {
+
+    /** Number of files hashed or written by one task without further
+     *  splitting. */
+    private static final int HASH_BATCH = 16;
+
+    private final File root;
+    private final Set<String> ignored;
+    private final int threads;
+
+    /** A working tree rooted at ROOT, never entering the .gitlet directory
+     *  or any file or directory named in IGNORED, and using THREADS threads. */
+    public WorkingTree(File root, Set<String> ignored, int threads) {
+        this.root = root;
+        this.ignored = ignored;
+        this.threads = Math.max(1, threads);
+    }
+
+    /** Return ARG, a file name given on the command line, as a path relative
+     *  to the root, with "" denoting the root itself. */
+    public static String normalize(String arg) {
+        String path = Paths.get(arg).normalize().toString().replace(File.separatorChar, '/');
+        return path.equals(".") ? "" : path;
+    }
+
+    public File file(String path) {
+        return path.isEmpty() ? root : new File(root, path);
+    }
+
+    /** Return the paths of all plain files at or below PATH, in order. */
+    public List<String> list(String path) {
+        File start = file(path);
+        if (start.isFile()) {
+            return List.of(path);
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<String> result = pool.invoke(new ListTask(path));
+            Collections.sort(result);
+            return result;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Return the hashes of the contents of the files at PATHS, in the same
+     *  order.  A file whose stat matches its entry in INDEX is not read.  If
+     *  STORE is not null, the contents of every file that is read are also
+     *  added to STORE. */
+    public String[] hash(List<String> paths, Index index, ObjectStore store) {
+        String[] result = new String[paths.size()];
+        index.entries();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new HashTask(paths, 0, paths.size(), index, store, result));
+            return result;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Change the working tree from the files of commit FROM, which it is
+     *  assumed to hold, to those of commit TO, taking contents from STORE.
+     *  Files that differ between the two trees are written or deleted, as
+     *  are files the same in both whose stat does not match their entry in
+     *  INDEX; untracked files are removed from the root directory only.
+     *  Return false, having changed nothing, if a file untracked in FROM
+     *  would be overwritten. */
+    public boolean checkout(Commit from, Commit to, Index index, ObjectStore store) {
+        Map<String, Blob> fromFiles = from.getBlobs();
+        Map<String, Blob> toFiles = to.getBlobs();
+        Set<String> changed = new TreeSet<>();
+        Tree.diff(store, from.getTree(), to.getTree(), "", changed);
+        List<String> deletions = new ArrayList<>();
+        for (String path : changed) {
+            if (!toFiles.containsKey(path)) {
+                deletions.add(path);
+            } else if (!fromFiles.containsKey(path) && file(path).exists()) {
+                return false;
+            }
+        }
+        List<Map.Entry<String, Blob>> writes = new ArrayList<>();
+        for (Map.Entry<String, Blob> entry : toFiles.entrySet()) {
+            String path = entry.getKey();
+            File f = file(path);
+            if (changed.contains(path) || !f.isFile() || !entry.getValue().getHashValue().equals(index.cachedHash(path, f))) {
+                writes.add(entry);
+            }
+        }
+        String[] names = root.list();
+        for (String name : names == null ? new String[0] : names) {
+            if (!skip(name) && file(name).isFile() && !toFiles.containsKey(name)) {
+                deletions.add(name);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new WriteTask(writes, 0, writes.size(), index, store));
+        } finally {
+            pool.shutdown();
+        }
+        for (String path : deletions) {
+            file(path).delete();
+        }
+        return true;
+    }
+
+    /** Make the file at PATH hold the contents of BLOB, taken from STORE,
+     *  unless INDEX or a comparison of its contents shows it already does. */
+    public void write(String path, Blob blob, Index index, ObjectStore store) {
+        File f = file(path);
+        String hashValue = blob.getHashValue();
+        if (f.isFile() && (hashValue.equals(index.cachedHash(path, f))
+                || f.length() == store.size(hashValue) && hashValue.equals(Utils.sha1(f)))) {
+            return;
+        }
+        if (f.getParentFile() != null) {
+            f.getParentFile().mkdirs();
+        }
+        store.copyTo(hashValue, f);
+    }
+
+    private boolean skip(String name) {
+        return name.equals(".gitlet") || ignored.contains(name);
+    }
+
+    /** Lists the files below one directory, forking a task per subdirectory. */
+    private class ListTask extends RecursiveTask<List<String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final String path;
+
+        ListTask(String path) {
+            this.path = path;
+        }
+
+        @Override
+        protected List<String> compute() {
+            List<String> files = new ArrayList<>();
+            List<ListTask> subdirectories = new ArrayList<>();
+            String[] names = file(path).list();
+            if (names == null) {
+                return files;
+            }
+            for (String name : names) {
+                if (skip(name)) {
+                    continue;
+                }
+                String child = path.isEmpty() ? name : path + "/" + name;
+                File f = file(child);
+                if (f.isDirectory()) {
+                    ListTask task = new ListTask(child);
+                    task.fork();
+                    subdirectories.add(task);
+                } else if (f.isFile()) {
+                    files.add(child);
+                }
+            }
+            for (ListTask task : subdirectories) {
+                files.addAll(task.join());
+            }
+            return files;
+        }
+    }
+
+    /** Hashes PATHS[START .. END), splitting the range in half until it is
+     *  at most HASH_BATCH files long. */
+    private class HashTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> paths;
+        private final int start;
+        private final int end;
+        private final Index index;
+        private final ObjectStore store;
+        private final String[] result;
+
+        HashTask(List<String> paths, int start, int end, Index index, ObjectStore store, String[] result) {
+            this.paths = paths;
+            this.start = start;
+            this.end = end;
+            this.index = index;
+            this.store = store;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > HASH_BATCH) {
+                int mid = (start + end) >>> 1;
+                invokeAll(new HashTask(paths, start, mid, index, store, result),
+                          new HashTask(paths, mid, end, index, store, result));
+                return;
+            }
+            for (int i = start; i < end; i += 1) {
+                String path = paths.get(i);
+                File f = file(path);
+                String hashValue = index.cachedHash(path, f);
+                if (hashValue == null) {
+                    hashValue = store == null ? Utils.sha1(f) : store.put(f);
+                }
+                result[i] = hashValue;
+            }
+        }
+    }
+
+    /** Writes the files in WRITES[START .. END), splitting the range in
+     *  half until it is at most HASH_BATCH files long. */
+    private class WriteTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Map.Entry<String, Blob>> writes;
+        private final int start;
+        private final int end;
+        private final Index index;
+        private final ObjectStore store;
+
+        WriteTask(List<Map.Entry<String, Blob>> writes, int start, int end, Index index, ObjectStore store) {
+            this.writes = writes;
+            this.start = start;
+            this.end = end;
+            this.index = index;
+            this.store = store;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > HASH_BATCH) {
+                int mid = (start + end) >>> 1;
+                invokeAll(new WriteTask(writes, start, mid, index, store),
+                          new WriteTask(writes, mid, end, index, store));
+                return;
+            }
+            for (int i = start; i < end; i += 1) {
+                write(writes.get(i).getKey(), writes.get(i).getValue(), index, store);
+            }
+        }
+    }
+}